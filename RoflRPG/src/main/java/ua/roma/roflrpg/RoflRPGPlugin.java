@@ -6,10 +6,17 @@ import org.bukkit.plugin.java.JavaPlugin;
 import ua.roma.roflrpg.api.RoflRPGApi;
 import ua.roma.roflrpg.defs.DefinitionRegistry;
 import ua.roma.roflrpg.services.*;
+import ua.roma.roflrpg.storage.DataStore;
+import ua.roma.roflrpg.storage.MySqlDataStore;
 import ua.roma.roflrpg.storage.SQLiteDataStore;
 import ua.roma.roflrpg.ui.GuiListener;
 import ua.roma.roflrpg.ui.GuiManager;
 import ua.roma.roflrpg.ui.commands.*;
+import ua.roma.roflrpg.util.ComponentCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Core RPG plugin.
@@ -19,7 +26,7 @@ import ua.roma.roflrpg.ui.commands.*;
 public final class RoflRPGPlugin extends JavaPlugin {
 
     private DefinitionRegistry defs;
-    private SQLiteDataStore store;
+    private DataStore store;
 
     private LangService lang;
     private HudService hud;
@@ -31,6 +38,7 @@ public final class RoflRPGPlugin extends JavaPlugin {
     private CinematicsService cinematics;
     private SkillService skills;
     private CosmeticsService cosmetics;
+    private SpatialIndex spatial;
     private GuiManager gui;
 
     @Override
@@ -50,9 +58,11 @@ public final class RoflRPGPlugin extends JavaPlugin {
 
         defs = new DefinitionRegistry(this);
         defs.loadAll();
+        ComponentCache.configure(getConfig().getInt("ui.componentCache.maxEntries", 4096));
+        prewarmComponents();
 
         // --- Persistent storage ---
-        store = new SQLiteDataStore(this);
+        store = openStore();
         store.init();
 
         // --- Runtime services ---
@@ -60,10 +70,11 @@ public final class RoflRPGPlugin extends JavaPlugin {
         stats = new StatsService(this, defs, profiles);
         resources = new ResourceService(this, profiles);
         cinematics = new CinematicsService(this);
+        spatial = new SpatialIndex();
 
         // Public API (consumed by addons)
         api = new RoflRPGApiImpl();
-        api.bind(profiles, stats, defs);
+        api.bind(profiles, stats, defs, spatial);
         getServer().getServicesManager().register(RoflRPGApi.class, api, this, ServicePriority.Normal);
 
         skills = new SkillService(this, defs, profiles, resources, cinematics, api);
@@ -73,7 +84,11 @@ public final class RoflRPGPlugin extends JavaPlugin {
 
         // --- Listeners ---
         getServer().getPluginManager().registerEvents(profiles, this);
+        getServer().getPluginManager().registerEvents(lang, this);
         getServer().getPluginManager().registerEvents(skills, this);
+        getServer().getPluginManager().registerEvents(hud, this);
+        getServer().getPluginManager().registerEvents(spatial, this);
+        getServer().getPluginManager().registerEvents(stats, this);
         getServer().getPluginManager().registerEvents(new GuiListener(this, gui, defs, profiles, stats), this);
 
         // --- Commands ---
@@ -82,19 +97,23 @@ public final class RoflRPGPlugin extends JavaPlugin {
         registerCommand("class", new ClassCommand(gui));
         registerCommand("talents", new TalentsCommand(gui));
         registerCommand("skills", new SkillsCommand(gui));
-        registerCommand("rpgadmin", new AdminCommand(this, defs, profiles, stats, resources));
+        registerCommand("rpgadmin", new AdminCommand(this, defs, profiles, stats, resources, skills, lang));
 
         // --- Start loops ---
+        profiles.start();
+        skills.start();
         hud.start();
         resources.start();
         cosmetics.start();
 
-        // Apply stats for online players on /reload
-        getServer().getScheduler().runTask(this, () -> getServer().getOnlinePlayers().forEach(p -> {
-            profiles.ensureLoaded(p);
-            stats.applyAll(p);
-            cosmetics.applyAura(p);
-        }));
+        // Apply stats for online players on /reload (profiles are loaded off-thread, stats applied back on the main thread)
+        getServer().getOnlinePlayers().forEach(p -> profiles.loadAsync(p.getUniqueId(), p.getName())
+                .thenRunAsync(() -> {
+                    if (!p.isOnline()) return;
+                    stats.applyAll(p);
+                    cosmetics.applyAura(p);
+                    skills.restoreCooldowns(p);
+                }, r -> getServer().getScheduler().runTask(this, r)));
 
         getLogger().info("RoflRPG v" + getDescription().getVersion() + " enabled");
     }
@@ -106,11 +125,33 @@ public final class RoflRPGPlugin extends JavaPlugin {
             cosmetics.stop();
             profiles.flushAll();
             store.close();
+            defs.close();
         } catch (Exception ignored) {
         }
         getLogger().info("RoflRPG v" + getDescription().getVersion() + " disabled");
     }
 
+    /** Parses lang strings and definition names/lore off the main thread, so first GUI opens hit the cache. */
+    public void prewarmComponents() {
+        List<String> sources = new ArrayList<>(lang.constantStrings());
+        for (String locale : lang.locales()) {
+            for (String s : defs.displayStrings()) sources.add(lang.resolve(locale, s));
+        }
+        getServer().getScheduler().runTaskAsynchronously(this, () -> ComponentCache.prewarm(sources));
+    }
+
+    private DataStore openStore() {
+        String type = getConfig().getString("storage.type", "sqlite").toLowerCase(Locale.ROOT);
+        return switch (type) {
+            case "mysql", "mariadb" -> new MySqlDataStore(this);
+            case "sqlite" -> new SQLiteDataStore(this);
+            default -> {
+                getLogger().warning("Unknown storage.type '" + type + "', using sqlite");
+                yield new SQLiteDataStore(this);
+            }
+        };
+    }
+
     private void registerCommand(String name, org.bukkit.command.CommandExecutor exec) {
         PluginCommand cmd = getCommand(name);
         if (cmd != null) cmd.setExecutor(exec);
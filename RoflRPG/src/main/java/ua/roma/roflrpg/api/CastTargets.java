@@ -0,0 +1,78 @@
+package ua.roma.roflrpg.api;
+
+import org.bukkit.Location;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import ua.roma.roflrpg.defs.SkillDef;
+
+import java.util.List;
+
+/**
+ * Targets of one cast, shared by every effect of the skill so they all hit the same entities.
+ *
+ * <p>The CONE/AREA query ({@link RoflRPGApi#coneLiving}/{@link RoflRPGApi#nearbyLiving}) runs at most once, on first use, from the caster's position at that
+ * moment. Lists are immutable.
+ */
+public final class CastTargets {
+    private final Player caster;
+    private final SkillDef.Target spec;
+    private final LivingEntity primary;
+    private final RoflRPGApi api;
+    private final double defaultConeAngle;
+
+    private List<LivingEntity> all;
+    private List<LivingEntity> others;
+
+    public CastTargets(Player caster, SkillDef.Target spec, LivingEntity primary, RoflRPGApi api) {
+        this(caster, spec, primary, api, SkillDef.Target.DEFAULT_CONE_ANGLE);
+    }
+
+    /** @param defaultConeAngle full cone angle used when the spec doesn't set one */
+    public CastTargets(Player caster, SkillDef.Target spec, LivingEntity primary, RoflRPGApi api, double defaultConeAngle) {
+        this.caster = caster;
+        this.spec = spec != null ? spec : new SkillDef.Target(SkillDef.Target.Type.SELF, 0);
+        this.primary = primary;
+        this.api = api;
+        this.defaultConeAngle = defaultConeAngle;
+    }
+
+    public SkillDef.Target spec() { return spec; }
+
+    /** Ray hit for RAY, the caster for SELF, null for CONE/AREA. */
+    public LivingEntity primary() { return primary; }
+
+    /**
+     * Everything the skill targets: the caster for SELF, the ray hit (if any) for RAY, entities in range for
+     * CONE/AREA (never the caster).
+     */
+    public List<LivingEntity> all() {
+        if (all == null) {
+            all = switch (spec.type()) {
+                case SELF -> List.of(caster);
+                case RAY -> primary == null ? List.of() : List.of(primary);
+                case CONE -> query(true);
+                case AREA -> query(false);
+            };
+        }
+        return all;
+    }
+
+    /** {@link #all()} without the caster (what damage/knockback apply to). */
+    public List<LivingEntity> others() {
+        if (others == null) {
+            List<LivingEntity> a = all();
+            others = a.contains(caster) ? a.stream().filter(e -> e != caster).toList() : a;
+        }
+        return others;
+    }
+
+    private List<LivingEntity> query(boolean cone) {
+        double range = spec.range();
+        if (range <= 0) return List.of();
+
+        Location o = caster.getLocation();
+        return List.copyOf(cone
+                ? api.coneLiving(o, o.getDirection(), range, spec.angleOr(defaultConeAngle), caster)
+                : api.nearbyLiving(o, range, caster));
+    }
+}
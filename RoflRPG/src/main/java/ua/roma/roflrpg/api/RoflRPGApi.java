@@ -1,8 +1,14 @@
 package ua.roma.roflrpg.api;
 
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+
 /**
  * Public API for addons.
  *
@@ -27,4 +33,13 @@ public interface RoflRPGApi {
      */
     boolean unlockBranch(Player player, String branchId);
     boolean hasBranch(Player player, String branchId);
+
+    /**
+     * Living entities within {@code radius} of {@code center} (sphere). Only the overlapped chunks are read, each at
+     * most once per tick. Main thread only.
+     */
+    List<LivingEntity> nearbyLiving(Location center, double radius, @Nullable Entity exclude);
+
+    /** Like {@link #nearbyLiving}, limited to a cone of {@code angleDeg} (full angle) around {@code direction}. */
+    List<LivingEntity> coneLiving(Location origin, Vector direction, double range, double angleDeg, @Nullable Entity exclude);
 }
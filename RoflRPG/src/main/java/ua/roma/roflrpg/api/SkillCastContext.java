@@ -20,6 +20,7 @@ public final class SkillCastContext {
     private final PlayerProfile profile;
     private final SkillDef skill;
     private final LivingEntity primaryTarget;
+    private final CastTargets targets;
 
     public SkillCastContext(RoflRPGPlugin plugin,
                             DefinitionRegistry defs,
@@ -29,6 +30,18 @@ public final class SkillCastContext {
                             PlayerProfile profile,
                             SkillDef skill,
                             LivingEntity primaryTarget) {
+        this(plugin, defs, profiles, resources, player, profile, skill,
+                new CastTargets(player, skill.target(), primaryTarget, plugin.api()));
+    }
+
+    public SkillCastContext(RoflRPGPlugin plugin,
+                            DefinitionRegistry defs,
+                            ProfileService profiles,
+                            ResourceService resources,
+                            Player player,
+                            PlayerProfile profile,
+                            SkillDef skill,
+                            CastTargets targets) {
         this.plugin = plugin;
         this.defs = defs;
         this.profiles = profiles;
@@ -36,7 +49,8 @@ public final class SkillCastContext {
         this.player = player;
         this.profile = profile;
         this.skill = skill;
-        this.primaryTarget = primaryTarget;
+        this.primaryTarget = targets.primary();
+        this.targets = targets;
     }
 
     public RoflRPGPlugin plugin() { return plugin; }
@@ -62,4 +76,7 @@ public final class SkillCastContext {
     public void timeline(String phase, LivingEntity t) { plugin.cinematics().play(player, skill, t, phase); }
 
     public LivingEntity target() { return primaryTarget; }
+
+    /** Targets of this cast, resolved once for all effects. */
+    public CastTargets targets() { return targets; }
 }
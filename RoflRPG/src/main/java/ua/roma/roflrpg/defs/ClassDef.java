@@ -15,5 +15,24 @@ public record ClassDef(
         Map<StatKey, Double> addStats,
         Map<StatKey, Double> multipliers,
         List<String> skillIds,
-        List<String> talents
-) {}
+        List<String> talents,
+        // resolved by DefinitionRegistry after skills are loaded: [trigger ordinal][hotbar slot]
+        SkillDef[][] skillSlots,
+        // dense per-class index (DefinitionRegistry#classIndex), stable across reloads
+        int index
+) {
+    private static final SkillDef[] NO_SKILLS = new SkillDef[0];
+
+    /**
+     * Skills of this class with the given trigger, in {@link #skillIds()} order: index = hotbar slot.
+     * Shared array, must not be modified.
+     */
+    public SkillDef[] skillsFor(SkillDef.Trigger trigger) {
+        return skillSlots == null ? NO_SKILLS : skillSlots[trigger.ordinal()];
+    }
+
+    /** Copy with the slot table resolved against the loaded skills. */
+    ClassDef withSkillSlots(SkillDef[][] slots) {
+        return new ClassDef(id, nameMm, role, loreMm, icon, addStats, multipliers, skillIds, talents, slots, index);
+    }
+}
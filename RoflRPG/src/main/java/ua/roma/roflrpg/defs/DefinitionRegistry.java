@@ -4,37 +4,253 @@ import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.potion.PotionEffectType;
 import ua.roma.roflrpg.model.StatKey;
+import ua.roma.roflrpg.model.TalentIndex;
+import ua.roma.roflrpg.util.IdInterner;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class DefinitionRegistry {
+    /** Definition files in the data folder, parsed in parallel by {@link #parseAll}. */
+    private static final List<String> FILES = List.of("races.yml", "classes.yml", "skills.yml", "talents.yml", "cosmetics.yml");
+
     private final JavaPlugin plugin;
 
-    private final Map<String, RaceDef> races = new LinkedHashMap<>();
-    private final Map<String, ClassDef> classes = new LinkedHashMap<>();
-    private final Map<String, SkillDef> skills = new LinkedHashMap<>();
-    private final Map<String, TalentDef> talents = new LinkedHashMap<>();
-    private final Map<String, AuraDef> auras = new LinkedHashMap<>();
+    /**
+     * Runs reloads and the per-file parses of {@link #parseAll}. Our own small pool rather than the common pool,
+     * which other plugins share; threads time out when idle.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Everything loaded from one pass over the definition files. Maps are unmodifiable and keep YAML order; a
+     * snapshot never changes after it is published, so it can be read from any thread.
+     *
+     * <p>The {@code *ByIndex} arrays are indexed by the definitions' {@code index()} (see {@link DefinitionRegistry#skillIndex} etc.);
+     * slots of ids that are no longer defined are null. Shared, must not be modified.
+     *
+     * @param generation increases with every published snapshot; caches derived from definitions can key off it
+     */
+    public record Snapshot(
+            int generation,
+            Map<String, RaceDef> races,
+            Map<String, ClassDef> classes,
+            Map<String, SkillDef> skills,
+            Map<String, TalentDef> talents,
+            Map<String, AuraDef> auras,
+            RaceDef[] raceByIndex,
+            ClassDef[] classByIndex,
+            SkillDef[] skillByIndex,
+            TalentDef[] talentByIndex
+    ) {
+        Snapshot withGeneration(int generation) {
+            return new Snapshot(generation, races, classes, skills, talents, auras,
+                    raceByIndex, classByIndex, skillByIndex, talentByIndex);
+        }
+    }
+
+    private volatile Snapshot current = new Snapshot(0, Map.of(), Map.of(), Map.of(), Map.of(), Map.of(),
+            new RaceDef[0], new ClassDef[0], new SkillDef[0], new TalentDef[0]);
+
+    // Id -> dense index per kind. Append-only, never cleared, so indices survive /rpgadmin reload.
+    // Talents use the process-wide TalentIndex, which player profiles key their ranks by.
+    private final IdInterner raceIndices = new IdInterner();
+    private final IdInterner classIndices = new IdInterner();
+    private final IdInterner skillIndices = new IdInterner();
 
     public DefinitionRegistry(JavaPlugin plugin) {
         this.plugin = plugin;
+
+        int threads = Math.max(2, Math.min(FILES.size(), Runtime.getRuntime().availableProcessors()));
+        AtomicInteger n = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "RoflRPG-Defs-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** Stops the loader threads (plugin disable). */
+    public void close() {
+        executor.shutdownNow();
     }
 
+    /**
+     * Loads and publishes the definitions on the calling thread (startup). Problems are logged but don't stop the
+     * load, there is nothing older to fall back to.
+     */
     public void loadAll() {
-        ensure("races.yml");
-        ensure("classes.yml");
-        ensure("skills.yml");
-        migrateSkillsCinematics();
-        ensure("talents.yml");
-        ensure("cosmetics.yml");
-
-        loadRaces();
-        loadClasses();
-        loadSkills();
-        loadTalents();
-        loadCosmetics();
+        publish(build(false));
+    }
+
+    /**
+     * Builds a new snapshot off the main thread and publishes it on the main thread. Lookups keep seeing the old
+     * definitions until then; if the files can't be read or fail validation, the old snapshot stays.
+     *
+     * @return completes on the main thread with true if the new definitions were published
+     */
+    public CompletableFuture<Boolean> reloadAsync() {
+        return CompletableFuture.supplyAsync(() -> build(true), executor)
+                .handleAsync((snap, err) -> {
+                    if (err != null) {
+                        Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                        plugin.getLogger().warning("[Defs] Reload failed, keeping the current definitions: " + cause.getMessage());
+                        return false;
+                    }
+                    publish(snap);
+                    return true;
+                }, r -> plugin.getServer().getScheduler().runTask(plugin, r));
+    }
+
+    /** Current definitions, for callers that need several lookups to agree with each other. */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    public int generation() {
+        return current.generation();
+    }
+
+    private synchronized void publish(Snapshot next) {
+        current = next.withGeneration(current.generation() + 1);
+        plugin.getLogger().info("[Defs] Loaded " + next.races().size() + " races, " + next.classes().size() + " classes, "
+                + next.skills().size() + " skills, " + next.talents().size() + " talents, " + next.auras().size() + " auras");
+    }
+
+    /**
+     * Reads every definition file into a new, unpublished snapshot.
+     *
+     * @param strict throw if a file is not valid YAML or the result fails {@link #validate}, instead of logging
+     * @throws IllegalStateException see {@code strict}
+     */
+    private synchronized Snapshot build(boolean strict) {
+        for (String res : FILES) ensure(res);
+
+        Map<String, YamlConfiguration> parsed = parseAll(strict);
+        // Same parsed tree for the migration and the load; saved back only if the migration changed something.
+        migrateSkillsCinematics(parsed.get("skills.yml"));
+
+        Map<String, RaceDef> races = loadRaces(parsed.get("races.yml"));
+        Map<String, SkillDef> skills = loadSkills(parsed.get("skills.yml"));
+        Map<String, ClassDef> classes = resolveSkillSlots(loadClasses(parsed.get("classes.yml")), skills);
+        Map<String, TalentDef> talents = loadTalents(parsed.get("talents.yml"));
+        Map<String, AuraDef> auras = loadCosmetics(parsed.get("cosmetics.yml"));
+
+        RaceDef[] raceByIndex = new RaceDef[raceIndices.size()];
+        for (RaceDef r : races.values()) raceByIndex[r.index()] = r;
+        ClassDef[] classByIndex = new ClassDef[classIndices.size()];
+        for (ClassDef c : classes.values()) classByIndex[c.index()] = c;
+        SkillDef[] skillByIndex = new SkillDef[skillIndices.size()];
+        for (SkillDef sk : skills.values()) skillByIndex[sk.index()] = sk;
+        TalentDef[] talentByIndex = new TalentDef[TalentIndex.size()];
+        for (TalentDef t : talents.values()) talentByIndex[t.index()] = t;
+
+        Snapshot snap = new Snapshot(0,
+                Collections.unmodifiableMap(races),
+                Collections.unmodifiableMap(classes),
+                Collections.unmodifiableMap(skills),
+                Collections.unmodifiableMap(talents),
+                Collections.unmodifiableMap(auras),
+                raceByIndex, classByIndex, skillByIndex, talentByIndex);
+        String problem = validate(snap);
+        if (problem != null) {
+            if (strict) throw new IllegalStateException(problem);
+            plugin.getLogger().severe("[Defs] " + problem);
+        }
+        return snap;
+    }
+
+    /** Logs dangling references; returns why the plugin can't run with these definitions, or null. */
+    private String validate(Snapshot s) {
+        for (ClassDef c : s.classes().values()) {
+            for (String sid : c.skillIds()) {
+                if (!s.skills().containsKey(sid)) plugin.getLogger().warning("[Defs] Class '" + c.id() + "' lists unknown skill '" + sid + "'");
+            }
+            for (String tid : c.talents()) {
+                if (!s.talents().containsKey(tid)) plugin.getLogger().warning("[Defs] Class '" + c.id() + "' lists unknown talent '" + tid + "'");
+            }
+        }
+        for (RaceDef r : s.races().values()) {
+            if (r.auraId() != null && !s.auras().containsKey(r.auraId())) {
+                plugin.getLogger().warning("[Defs] Race '" + r.id() + "' uses unknown aura '" + r.auraId() + "'");
+            }
+        }
+
+        if (s.races().isEmpty()) return "races.yml defines no races";
+        if (s.classes().isEmpty()) return "classes.yml defines no classes";
+        return null;
+    }
+
+    /**
+     * Parses all {@link #FILES} concurrently on {@link #executor} and logs how long each one took.
+     *
+     * <p>A reload already runs on that executor, so the calling thread takes back every parse no worker has started
+     * yet and runs it itself; it never just waits on queued work, whatever the pool size.
+     *
+     * @return file name -> parsed config
+     */
+    private Map<String, YamlConfiguration> parseAll(boolean strict) {
+        long start = System.nanoTime();
+        List<FutureTask<Parsed>> tasks = new ArrayList<>(FILES.size());
+        for (String res : FILES) {
+            FutureTask<Parsed> task = new FutureTask<>(() -> parse(res, strict));
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        Map<String, YamlConfiguration> out = new HashMap<>();
+        StringBuilder report = new StringBuilder();
+        for (FutureTask<Parsed> task : tasks) {
+            if (executor.remove(task)) task.run();
+            Parsed p;
+            try {
+                p = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading definitions", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw new IllegalStateException(e.getCause());
+            }
+            out.put(p.res(), p.yaml());
+            if (!report.isEmpty()) report.append(", ");
+            report.append(p.res()).append(' ').append((p.bytes() + 1023) / 1024).append(" KB/")
+                    .append(p.nanos() / 1_000_000).append(" ms");
+        }
+        plugin.getLogger().info("[Defs] Parsed " + FILES.size() + " files in " + (System.nanoTime() - start) / 1_000_000
+                + " ms (" + report + ")");
+        return out;
+    }
+
+    private record Parsed(String res, YamlConfiguration yaml, long bytes, long nanos) {}
+
+    /**
+     * Parses one definition file. Unlike {@code loadConfiguration} a broken file is reported, so a reload can keep
+     * the old definitions instead of publishing an empty section.
+     */
+    private Parsed parse(String res, boolean strict) {
+        long start = System.nanoTime();
+        File f = new File(plugin.getDataFolder(), res);
+        YamlConfiguration y = new YamlConfiguration();
+        try {
+            y.load(f);
+        } catch (Exception e) {
+            if (strict) throw new IllegalStateException(res + ": " + e.getMessage(), e);
+            plugin.getLogger().severe("[Defs] Could not load " + res + ": " + e.getMessage());
+            y = new YamlConfiguration();
+        }
+        return new Parsed(res, y, f.length(), System.nanoTime() - start);
     }
 
     private void ensure(String res) {
@@ -54,12 +270,11 @@ public final class DefinitionRegistry {
      *   <li>Otherwise, we generate a small default timeline based on skill id prefix and target type.</li>
      * </ul>
      */
-    private void migrateSkillsCinematics() {
+    private void migrateSkillsCinematics(YamlConfiguration y) {
         try {
             File f = new File(plugin.getDataFolder(), "skills.yml");
             if (!f.exists()) return;
 
-            YamlConfiguration y = YamlConfiguration.loadConfiguration(f);
             ConfigurationSection root = y.getConfigurationSection("skills");
             if (root == null) return;
 
@@ -108,7 +323,7 @@ public final class DefinitionRegistry {
     }
 
     /**
-     * Default timeline generator used only by {@link #migrateSkillsCinematics()}.
+     * Default timeline generator used only by {@link #migrateSkillsCinematics(YamlConfiguration)}.
      *
      * <p>In this project we use a simple convention where skill ids are prefixed,
      * for example: <code>warrior_cleave</code> => prefix <code>warrior</code>.
@@ -156,24 +371,60 @@ public final class DefinitionRegistry {
         return m;
     }
 
-    public boolean hasRace(String id) { return races.containsKey(id); }
-    public boolean hasClass(String id) { return classes.containsKey(id); }
-    public RaceDef race(String id) { return races.get(id); }
-    public ClassDef clazz(String id) { return classes.get(id); }
-    public SkillDef skill(String id) { return skills.get(id); }
-    public TalentDef talent(String id) { return talents.get(id); }
-    public AuraDef aura(String id) { return auras.get(id); }
-
-    public Collection<RaceDef> races() { return races.values(); }
-    public Collection<ClassDef> classes() { return classes.values(); }
-    public Collection<TalentDef> talents() { return talents.values(); }
-
-    private void loadRaces() {
-        races.clear();
-        File f = new File(plugin.getDataFolder(), "races.yml");
-        YamlConfiguration y = YamlConfiguration.loadConfiguration(f);
+    public boolean hasRace(String id) { return current.races().containsKey(id); }
+    public boolean hasClass(String id) { return current.classes().containsKey(id); }
+    public RaceDef race(String id) { return current.races().get(id); }
+    public ClassDef clazz(String id) { return current.classes().get(id); }
+    public SkillDef skill(String id) { return current.skills().get(id); }
+    public TalentDef talent(String id) { return current.talents().get(id); }
+    public AuraDef aura(String id) { return current.auras().get(id); }
+
+    /** Index for per-skill arrays, or -1 if the skill was never loaded. */
+    public int skillIndex(String id) { return skillIndices.indexOf(id); }
+    /** Upper bound (exclusive) of {@link SkillDef#index()}. */
+    public int skillIndexCount() { return skillIndices.size(); }
+
+    /** Index for per-race arrays, or -1 if the race was never loaded. */
+    public int raceIndex(String id) { return raceIndices.indexOf(id); }
+    public int raceIndexCount() { return raceIndices.size(); }
+    /** Index for per-class arrays, or -1 if the class was never loaded. */
+    public int classIndex(String id) { return classIndices.indexOf(id); }
+    public int classIndexCount() { return classIndices.size(); }
+    /** Index for per-talent arrays, or -1 if the talent was never loaded. */
+    public int talentIndex(String id) { return TalentIndex.indexOf(id); }
+    public int talentIndexCount() { return TalentIndex.size(); }
+    /** Talent id for an index (also of talents no longer defined), or null. */
+    public String talentId(int index) { return TalentIndex.idOf(index); }
+
+    // Lookups by index; null if the index is unknown or no longer defined.
+    public RaceDef race(int index) { return at(current.raceByIndex(), index); }
+    public ClassDef clazz(int index) { return at(current.classByIndex(), index); }
+    public SkillDef skill(int index) { return at(current.skillByIndex(), index); }
+    public TalentDef talent(int index) { return at(current.talentByIndex(), index); }
+
+    private static <T> T at(T[] arr, int index) {
+        return index >= 0 && index < arr.length ? arr[index] : null;
+    }
+
+    /** Names and lore of all definitions as written in the YAML (may be {@code @lang.key} references). */
+    public List<String> displayStrings() {
+        Snapshot snap = current;
+        List<String> out = new ArrayList<>();
+        for (RaceDef r : snap.races().values()) { out.add(r.nameMm()); out.addAll(r.loreMm()); }
+        for (ClassDef c : snap.classes().values()) { out.add(c.nameMm()); out.addAll(c.loreMm()); }
+        for (SkillDef s : snap.skills().values()) out.add(s.nameMm());
+        for (TalentDef t : snap.talents().values()) { out.add(t.nameMm()); out.addAll(t.loreMm()); }
+        return out;
+    }
+
+    public Collection<RaceDef> races() { return current.races().values(); }
+    public Collection<ClassDef> classes() { return current.classes().values(); }
+    public Collection<TalentDef> talents() { return current.talents().values(); }
+
+    private Map<String, RaceDef> loadRaces(YamlConfiguration y) {
+        Map<String, RaceDef> races = new LinkedHashMap<>();
         ConfigurationSection root = y.getConfigurationSection("races");
-        if (root == null) return;
+        if (root == null) return races;
 
         for (String id : root.getKeys(false)) {
             ConfigurationSection s = root.getConfigurationSection(id);
@@ -191,16 +442,15 @@ public final class DefinitionRegistry {
             ConfigurationSection cos = s.getConfigurationSection("cosmetics");
             if (cos != null) aura = cos.getString("aura");
 
-            races.put(id, new RaceDef(id, name, lore, icon, scale, add, mult, aura));
+            races.put(id, new RaceDef(id, name, lore, icon, scale, add, mult, aura, raceIndices.intern(id)));
         }
+        return races;
     }
 
-    private void loadClasses() {
-        classes.clear();
-        File f = new File(plugin.getDataFolder(), "classes.yml");
-        YamlConfiguration y = YamlConfiguration.loadConfiguration(f);
+    private Map<String, ClassDef> loadClasses(YamlConfiguration y) {
+        Map<String, ClassDef> classes = new LinkedHashMap<>();
         ConfigurationSection root = y.getConfigurationSection("classes");
-        if (root == null) return;
+        if (root == null) return classes;
 
         for (String id : root.getKeys(false)) {
             ConfigurationSection s = root.getConfigurationSection(id);
@@ -217,17 +467,34 @@ public final class DefinitionRegistry {
             List<String> skillIds = s.getStringList("skills");
             List<String> talentIds = s.getStringList("talents");
 
-            classes.put(id, new ClassDef(id, name, role, lore, icon, add, mult, skillIds, talentIds));
+            classes.put(id, new ClassDef(id, name, role, lore, icon, add, mult, skillIds, talentIds, null, classIndices.intern(id)));
         }
+        return classes;
+    }
+
+    /** Builds {@link ClassDef#skillsFor} tables, so input handlers and the HUD don't filter skill lists per event. */
+    private static Map<String, ClassDef> resolveSkillSlots(Map<String, ClassDef> classes, Map<String, SkillDef> skills) {
+        SkillDef.Trigger[] triggers = SkillDef.Trigger.values();
+        classes.replaceAll((id, c) -> {
+            SkillDef[][] slots = new SkillDef[triggers.length][];
+            for (SkillDef.Trigger t : triggers) {
+                List<SkillDef> list = new ArrayList<>();
+                for (String sid : c.skillIds()) {
+                    SkillDef s = skills.get(sid);
+                    if (s != null && s.trigger() == t) list.add(s);
+                }
+                slots[t.ordinal()] = list.toArray(new SkillDef[0]);
+            }
+            return c.withSkillSlots(slots);
+        });
+        return classes;
     }
 
     @SuppressWarnings("unchecked")
-    private void loadSkills() {
-        skills.clear();
-        File f = new File(plugin.getDataFolder(), "skills.yml");
-        YamlConfiguration y = YamlConfiguration.loadConfiguration(f);
+    private Map<String, SkillDef> loadSkills(YamlConfiguration y) {
+        Map<String, SkillDef> skills = new LinkedHashMap<>();
         ConfigurationSection root = y.getConfigurationSection("skills");
-        if (root == null) return;
+        if (root == null) return skills;
 
         for (String id : root.getKeys(false)) {
             ConfigurationSection s = root.getConfigurationSection(id);
@@ -253,7 +520,8 @@ public final class DefinitionRegistry {
             if (t != null) {
                 SkillDef.Target.Type tt = SkillDef.Target.Type.valueOf(t.getString("type", "SELF").toUpperCase(Locale.ROOT));
                 double range = t.getDouble("range", 0);
-                target = new SkillDef.Target(tt, range);
+                double angle = t.contains("angle") ? t.getDouble("angle") : Double.NaN;
+                target = new SkillDef.Target(tt, range, angle);
             }
 
             int reqLevel = Math.max(1, s.getInt("requiredLevel", 1));
@@ -268,22 +536,97 @@ public final class DefinitionRegistry {
                 for (Map.Entry<?, ?> e : m.entrySet()) clean.put(String.valueOf(e.getKey()), e.getValue());
                 effects.add(clean);
             }
+            List<SkillEffect> effectOps = compileEffects(id, effects);
 
             String particle = null;
             ConfigurationSection v = s.getConfigurationSection("visuals");
             if (v != null) particle = v.getString("particle");
             SkillDef.Visuals visuals = new SkillDef.Visuals(particle);
 
-            skills.put(id, new SkillDef(id, name, icon, trigger, cd, gcd, cost, target, reqLevel, handlerId, data, effects, visuals));
+            int index = skillIndices.intern(id);
+            skills.put(id, new SkillDef(id, name, icon, trigger, cd, gcd, cost, target, reqLevel, handlerId, data, effects, effectOps, visuals, index));
+        }
+        return skills;
+    }
+
+    /**
+     * Compiles the {@code effects:} list of a skill. Keys that are not set stay {@link SkillEffect#UNSET} so each
+     * executor keeps its own fallback; questionable values are logged here once instead of on every cast, and only
+     * entries no executor would run are dropped.
+     */
+    private List<SkillEffect> compileEffects(String skillId, List<Map<String, Object>> effects) {
+        List<SkillEffect> out = new ArrayList<>(effects.size());
+        for (int i = 0; i < effects.size(); i++) {
+            Map<String, Object> e = effects.get(i);
+            String where = "Skill '" + skillId + "' effect #" + (i + 1);
+            String type = String.valueOf(e.getOrDefault("type", "")).trim().toUpperCase(Locale.ROOT);
+
+            SkillEffect op = switch (type) {
+                case "HEAL", "HEAL_SELF" -> new SkillEffect.Heal(num(where, e, "amount"));
+                case "HEAL_TARGET" -> new SkillEffect.HealTarget(num(where, e, "amount"));
+                case "DAMAGE" -> new SkillEffect.Damage(num(where, e, "amount"));
+                case "DAMAGE_RANDOM" -> {
+                    double min = num(where, e, "min");
+                    double max = num(where, e, "max");
+                    if (max < min) plugin.getLogger().warning(where + ": max (" + max + ") is below min (" + min + ").");
+                    yield new SkillEffect.DamageRandom(min, max);
+                }
+                case "DASH" -> new SkillEffect.Dash(num(where, e, "strength"));
+                case "KNOCKBACK" -> new SkillEffect.Knockback(num(where, e, "strength"));
+                case "CLEANSE" -> new SkillEffect.Cleanse();
+                case "POTION" -> {
+                    var effect = potion(where, e, "effect");
+                    var potion = potion(where, e, "potion");
+                    // An unknown 'effect' wins over any alias, so nothing would ever apply it.
+                    if (effect == null && e.get("effect") != null) yield null;
+                    double ticks = num(where, e, "durationTicks");
+                    double duration = num(where, e, "duration");
+                    double set = SkillEffect.or(ticks, duration);
+                    if (set <= 0) plugin.getLogger().warning(where + ": potion duration " + set + " is not positive.");
+                    yield new SkillEffect.Potion(effect, potion, ticks, duration, SkillEffect.or(num(where, e, "amplifier"), 0),
+                            bool(e, "ambient", false), bool(e, "particles", true), bool(e, "icon", true));
+                }
+                default -> {
+                    plugin.getLogger().warning(where + ": unknown effect type '" + type + "', skipped.");
+                    yield null;
+                }
+            };
+            if (op != null) out.add(op);
+        }
+        return List.copyOf(out);
+    }
+
+    /** The number under {@code key}, {@link SkillEffect#UNSET} if missing, 0 if not a number (as executors read it). */
+    private double num(String where, Map<String, Object> e, String key) {
+        Object o = e.get(key);
+        if (o == null) return SkillEffect.UNSET;
+        if (o instanceof Number n) return n.doubleValue();
+        try {
+            return Double.parseDouble(String.valueOf(o).trim());
+        } catch (NumberFormatException ex) {
+            plugin.getLogger().warning(where + ": '" + key + "' is not a number (" + o + "), using 0.");
+            return 0;
         }
     }
 
-    private void loadTalents() {
-        talents.clear();
-        File f = new File(plugin.getDataFolder(), "talents.yml");
-        YamlConfiguration y = YamlConfiguration.loadConfiguration(f);
+    /** The potion type under {@code key}, null if missing or unknown (logged). */
+    private PotionEffectType potion(String where, Map<String, Object> e, String key) {
+        Object o = e.get(key);
+        if (o == null) return null;
+        PotionEffectType t = SkillEffect.Potion.resolveType(String.valueOf(o));
+        if (t == null) plugin.getLogger().warning(where + ": unknown potion effect '" + o + "' in '" + key + "'.");
+        return t;
+    }
+
+    private static boolean bool(Map<String, Object> e, String key, boolean def) {
+        Object o = e.get(key);
+        return o == null ? def : Boolean.parseBoolean(String.valueOf(o));
+    }
+
+    private Map<String, TalentDef> loadTalents(YamlConfiguration y) {
+        Map<String, TalentDef> talents = new LinkedHashMap<>();
         ConfigurationSection root = y.getConfigurationSection("talents");
-        if (root == null) return;
+        if (root == null) return talents;
 
         for (String id : root.getKeys(false)) {
             ConfigurationSection s = root.getConfigurationSection(id);
@@ -307,16 +650,15 @@ public final class DefinitionRegistry {
             int maxRank = Math.max(1, s.getInt("max_rank", 1));
             int pointsPerRank = Math.max(1, s.getInt("points_per_rank", 1));
 
-            talents.put(id, new TalentDef(id, name, lore, icon, add, mult, maxRank, pointsPerRank, maxManaAdd, maxStaminaAdd));
+            talents.put(id, new TalentDef(id, name, lore, icon, add, mult, maxRank, pointsPerRank, maxManaAdd, maxStaminaAdd, TalentIndex.intern(id)));
         }
+        return talents;
     }
 
-    private void loadCosmetics() {
-        auras.clear();
-        File f = new File(plugin.getDataFolder(), "cosmetics.yml");
-        YamlConfiguration y = YamlConfiguration.loadConfiguration(f);
+    private Map<String, AuraDef> loadCosmetics(YamlConfiguration y) {
+        Map<String, AuraDef> auras = new LinkedHashMap<>();
         ConfigurationSection root = y.getConfigurationSection("auras");
-        if (root == null) return;
+        if (root == null) return auras;
 
         for (String id : root.getKeys(false)) {
             ConfigurationSection s = root.getConfigurationSection(id);
@@ -331,6 +673,7 @@ public final class DefinitionRegistry {
 
             auras.put(id, new AuraDef(id, type, particle, color, size, period, blockData));
         }
+        return auras;
     }
 
     private static Material material(String name) {
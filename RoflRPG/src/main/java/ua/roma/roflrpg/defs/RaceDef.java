@@ -14,5 +14,7 @@ public record RaceDef(
         double scale,
         Map<StatKey, Double> addStats,
         Map<StatKey, Double> multipliers,
-        String auraId
+        String auraId,
+        // dense per-race index (DefinitionRegistry#raceIndex), stable across reloads
+        int index
 ) {}
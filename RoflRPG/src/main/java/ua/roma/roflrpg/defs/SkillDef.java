@@ -18,12 +18,31 @@ public record SkillDef(
         String handlerId,
         Map<String, Object> data,
         List<Map<String, Object>> effects,
-        Visuals visuals
+        // effects compiled at load; what executors should run
+        List<SkillEffect> effectOps,
+        Visuals visuals,
+        // dense per-skill index (DefinitionRegistry#skillIndex), stable across reloads
+        int index
 ) {
     public enum Trigger { Z, RIGHT_CLICK, CTRL_RIGHT_CLICK, LEFT_CLICK, SNEAK }
 
-    public record Target(Type type, double range) {
+    /** @param angle full cone angle in degrees (CONE only), NaN if not set: the executor picks its default */
+    public record Target(Type type, double range, double angle) {
+        /** Cone of addon handlers when {@code angle} is not set: 70 degrees either side. */
+        public static final double DEFAULT_CONE_ANGLE = 140.0;
+        /** Cone of the built-in executor when {@code angle} is not set: 35 degrees either side. */
+        public static final double BUILTIN_CONE_ANGLE = 70.0;
+
         public enum Type { SELF, RAY, CONE, AREA }
+
+        public Target(Type type, double range) {
+            this(type, range, Double.NaN);
+        }
+
+        /** {@link #angle()}, or {@code def} if it is not set. */
+        public double angleOr(double def) {
+            return Double.isNaN(angle) ? def : angle;
+        }
     }
 
     public record Visuals(String particle) {}
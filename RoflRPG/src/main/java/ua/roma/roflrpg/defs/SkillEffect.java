@@ -0,0 +1,74 @@
+package ua.roma.roflrpg.defs;
+
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.Locale;
+
+/**
+ * One entry of a skill's {@code effects:} list, compiled by {@link DefinitionRegistry} when skills.yml is loaded.
+ *
+ * <p>Values are already parsed (numbers read, potion types resolved, legacy names mapped), so executors only switch
+ * over the record type. Nothing is defaulted here: a key that is not set compiles to {@link #UNSET} (or a null potion
+ * type) and each executor keeps its own fallback, e.g. the built-in one heals 4 by default while the effects addon
+ * heals 0. Values that are not numbers compile to 0, as both executors read them. Suspicious entries are reported at
+ * load; only entries no executor could run (unknown type or potion name) are left out. The raw maps stay available
+ * in {@link SkillDef#effects()}.
+ */
+public sealed interface SkillEffect {
+
+    /** A numeric key that is not set. */
+    double UNSET = Double.NaN;
+
+    /** {@code value}, or {@code def} if it is {@link #UNSET}. */
+    static double or(double value, double def) {
+        return Double.isNaN(value) ? def : value;
+    }
+
+    /** {@code HEAL} / {@code HEAL_SELF}: always the caster. */
+    record Heal(double amount) implements SkillEffect {}
+
+    record HealTarget(double amount) implements SkillEffect {}
+
+    record Damage(double amount) implements SkillEffect {}
+
+    /** Not reordered: {@code max < min} is up to the executor. */
+    record DamageRandom(double min, double max) implements SkillEffect {}
+
+    /**
+     * {@code effect} / {@code durationTicks} and their aliases {@code potion} / {@code duration}, each as set in the
+     * entry (null / {@link #UNSET} if not).
+     */
+    record Potion(PotionEffectType effect, PotionEffectType potion, double durationTicks, double duration,
+                  double amplifier, boolean ambient, boolean particles, boolean icon) implements SkillEffect {
+
+        /** Accepts modern ids, {@code minecraft:} keys and pre-1.20.5 names ({@code SLOW}, {@code JUMP}...); null if unknown. */
+        public static PotionEffectType resolveType(String name) {
+            if (name == null || name.isBlank()) return null;
+            String n = name.trim().toUpperCase(Locale.ROOT);
+            if (n.startsWith("MINECRAFT:")) n = n.substring("MINECRAFT:".length());
+            PotionEffectType direct = PotionEffectType.getByName(n);
+            if (direct != null) return direct;
+
+            // Map legacy names to modern enum ids.
+            String alt = switch (n) {
+                case "SLOW" -> "SLOWNESS";
+                case "FAST_DIGGING" -> "HASTE";
+                case "SLOW_DIGGING" -> "MINING_FATIGUE";
+                case "INCREASE_DAMAGE" -> "STRENGTH";
+                case "JUMP" -> "JUMP_BOOST";
+                case "CONFUSION" -> "NAUSEA";
+                case "DAMAGE_RESISTANCE" -> "RESISTANCE";
+                case "HEAL" -> "INSTANT_HEALTH";
+                case "HARM" -> "INSTANT_DAMAGE";
+                default -> n;
+            };
+            return PotionEffectType.getByName(alt);
+        }
+    }
+
+    record Knockback(double strength) implements SkillEffect {}
+
+    record Dash(double strength) implements SkillEffect {}
+
+    record Cleanse() implements SkillEffect {}
+}
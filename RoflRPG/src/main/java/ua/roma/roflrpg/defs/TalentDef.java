@@ -18,5 +18,7 @@ public record TalentDef(
         /** Talent points needed per rank. Default: 1. */
         Integer pointsPerRank,
         Integer maxManaAdd,
-        Integer maxStaminaAdd
+        Integer maxStaminaAdd,
+        // dense per-talent index (DefinitionRegistry#talentIndex), stable across reloads
+        int index
 ) {}
@@ -1,13 +1,19 @@
 package ua.roma.roflrpg.model;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class PlayerProfile {
+    private static final int[] NO_TALENTS = new int[0];
+    private static final short[] NO_RANKS = new short[0];
+
     private final UUID uuid;
     private String lastKnownName;
 
@@ -18,8 +24,16 @@ public final class PlayerProfile {
     private long xp = 0;
 
     private int talentPoints = 0;
-    /** Normal talent tree: talentId -> rank (>=1 means unlocked). */
-    private final Map<String, Integer> talentRanks = new HashMap<>();
+    /**
+     * Normal talent tree: parallel arrays keyed by {@link TalentIndex} index, the first {@code talentCount} entries are
+     * used, every rank is >= 1. A player has a few dozen talents at most, so a linear scan over ints beats hashing
+     * and nothing is boxed. Ids are turned back into strings only for storage.
+     */
+    private int[] talentIdx = NO_TALENTS;
+    private short[] talentRanks = NO_RANKS;
+    private int talentCount = 0;
+    /** Bumped on every rank change (not persisted), so derived caches can tell whether talents changed. */
+    private int talentsVersion = 0;
 
     /**
      * Reserved for the future "separate branch" plugin.
@@ -32,68 +46,311 @@ public final class PlayerProfile {
     private double mana = 100;
     private double stamina = 100;
 
+    /**
+     * Persisted skill cooldowns: skillId -> deadline (epoch millis), plus the GCD deadline.
+     * The live copy is SkillService's cooldown table; this one is updated on every cast and restored on join.
+     * Short cooldowns don't make the profile dirty ({@code cooldownsPending} instead): they ride along with the next
+     * save, and {@link #commitCooldowns()} forces one on quit/shutdown.
+     */
+    private final Map<String, Long> cooldownUntil = new HashMap<>();
+    private long gcdUntil = 0;
+    private boolean cooldownsPending;
+
+    /**
+     * Dirty tracking for write-behind persistence.
+     * Every mutation bumps {@code version} (main thread); the writer records the version it persisted.
+     */
+    private volatile long version = 0;
+    private volatile long savedVersion = 0;
+
+    /**
+     * Version of the database row ({@code profiles.row_version}). Every {@link #snapshot()} takes the next one, so
+     * rows only move forward; crash journal replay uses it to skip rows another server has written since.
+     */
+    private long rowVersion = 0;
+
+    /**
+     * Talent/branch rows changed since the last snapshot, so storage can upsert only those rows.
+     * {@code rewriteTalents} asks for all rows to be replaced instead (respec, legacy data, failed write).
+     */
+    private final Set<String> changedTalents = new HashSet<>();
+    private final Set<String> changedBranches = new HashSet<>();
+    private final AtomicBoolean rewriteTalents = new AtomicBoolean();
+
     public PlayerProfile(UUID uuid, String lastKnownName) {
         this.uuid = uuid;
         this.lastKnownName = lastKnownName == null ? "" : lastKnownName;
     }
 
+    /**
+     * Detached copy for persistence. Take it on the main thread and hand it to the writer,
+     * so the live profile can keep mutating while the copy is being written.
+     *
+     * <p>Pending talent/branch changes move into the copy; if its write fails call
+     * {@link #requestTalentRewrite()} on this profile.
+     */
+    public PlayerProfile snapshot() {
+        rowVersion++;
+        cooldownsPending = false;
+        PlayerProfile c = copy();
+        c.changedTalents.addAll(changedTalents);
+        c.changedBranches.addAll(changedBranches);
+        c.rewriteTalents.set(rewriteTalents.getAndSet(false));
+        changedTalents.clear();
+        changedBranches.clear();
+        return c;
+    }
+
+    /** Detached copy that leaves the pending talent/branch changes here (for the crash journal). */
+    public PlayerProfile copy() {
+        PlayerProfile c = new PlayerProfile(uuid, lastKnownName);
+        c.raceId = raceId;
+        c.classId = classId;
+        c.level = level;
+        c.xp = xp;
+        c.talentPoints = talentPoints;
+        c.talentIdx = Arrays.copyOf(talentIdx, talentCount);
+        c.talentRanks = Arrays.copyOf(talentRanks, talentCount);
+        c.talentCount = talentCount;
+        c.unlockedBranches.addAll(unlockedBranches);
+        c.maxMana = maxMana;
+        c.maxStamina = maxStamina;
+        c.mana = mana;
+        c.stamina = stamina;
+        c.cooldownUntil.putAll(cooldownUntil);
+        c.gcdUntil = gcdUntil;
+        c.version = version;
+        c.savedVersion = savedVersion;
+        c.rowVersion = rowVersion;
+        return c;
+    }
+
+    public long version() { return version; }
+    public long rowVersion() { return rowVersion; }
+    /** Set by storage when the row is read. */
+    public void rowVersion(long v) { rowVersion = v; }
+    public boolean isDirty() { return version != savedVersion || rewriteTalents.get(); }
+
+    /** Called once the given version has been written. */
+    public void markSaved(long v) { if (v > savedVersion) savedVersion = v; }
+
+    /** Called by storage after a profile was read: nothing is pending. */
+    public void markLoaded() {
+        savedVersion = version;
+        changedTalents.clear();
+        changedBranches.clear();
+    }
+
+    /** Talent ids whose rank changed since the last snapshot (rank 0 = row must be deleted). */
+    public Set<String> changedTalents() { return Collections.unmodifiableSet(changedTalents); }
+    public Set<String> changedBranches() { return Collections.unmodifiableSet(changedBranches); }
+    public boolean talentRewriteRequested() { return rewriteTalents.get(); }
+
+    /** Next save replaces all talent/branch rows. Safe to call from the writer thread. */
+    public void requestTalentRewrite() { rewriteTalents.set(true); }
+
+    // Non-atomic increment is fine: only the main thread mutates profiles.
+    private void touch() { version++; }
+
     public UUID uuid() { return uuid; }
     public String lastKnownName() { return lastKnownName; }
-    public void lastKnownName(String n) { this.lastKnownName = n == null ? "" : n; }
+    public void lastKnownName(String n) {
+        String v = n == null ? "" : n;
+        if (!v.equals(lastKnownName)) { lastKnownName = v; touch(); }
+    }
 
     public String raceId() { return raceId; }
-    public void raceId(String id) { this.raceId = id == null ? "human" : id; }
+    public void raceId(String id) {
+        String v = id == null ? "human" : id;
+        if (!v.equals(raceId)) { raceId = v; touch(); }
+    }
 
     public String classId() { return classId; }
-    public void classId(String id) { this.classId = id == null ? "guest" : id; }
+    public void classId(String id) {
+        String v = id == null ? "guest" : id;
+        if (!v.equals(classId)) { classId = v; touch(); }
+    }
 
     public int level() { return level; }
-    public void level(int v) { this.level = Math.max(1, v); }
+    public void level(int v) {
+        int n = Math.max(1, v);
+        if (n != level) { level = n; touch(); }
+    }
 
     public long xp() { return xp; }
-    public void xp(long v) { this.xp = Math.max(0, v); }
+    public void xp(long v) {
+        long n = Math.max(0, v);
+        if (n != xp) { xp = n; touch(); }
+    }
 
     public int talentPoints() { return talentPoints; }
-    public void talentPoints(int v) { this.talentPoints = Math.max(0, v); }
+    public void talentPoints(int v) {
+        int n = Math.max(0, v);
+        if (n != talentPoints) { talentPoints = n; touch(); }
+    }
+
+    public int talentRank(String id) { return talentRank(TalentIndex.indexOf(id)); }
 
-    public int talentRank(String id) { return talentRanks.getOrDefault(id, 0); }
-    public boolean hasTalent(String id) { return talentRank(id) > 0; }
-    public Map<String, Integer> talentRanks() { return Collections.unmodifiableMap(talentRanks); }
+    /** @param index {@link TalentIndex} index (= {@code TalentDef.index()}) */
+    public int talentRank(int index) {
+        int i = talentSlot(index);
+        return i < 0 ? 0 : talentRanks[i];
+    }
+    public boolean hasTalent(String id) { return talentSlot(TalentIndex.indexOf(id)) >= 0; }
+
+    // Allocation-free iteration: for (int i = 0; i < talentCount(); i++) talentIndexAt(i) / talentRankAt(i)
+    public int talentCount() { return talentCount; }
+    public int talentIndexAt(int i) { return talentIdx[i]; }
+    /** String id of an entry, for storage. */
+    public String talentIdAt(int i) { return TalentIndex.idOf(talentIdx[i]); }
+    public int talentRankAt(int i) { return talentRanks[i]; }
+    public int talentsVersion() { return talentsVersion; }
+
+    /** New map of talentId -> rank, for cold paths only; hot paths iterate the indexed accessors above. */
+    public Map<String, Integer> talentRanks() {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (int i = 0; i < talentCount; i++) out.put(talentIdAt(i), (int) talentRanks[i]);
+        return Collections.unmodifiableMap(out);
+    }
 
     public void setTalentRank(String id, int rank) {
         if (id == null || id.isBlank()) return;
-        if (rank <= 0) talentRanks.remove(id);
-        else talentRanks.put(id, rank);
+        if (putRank(TalentIndex.intern(id), rank)) {
+            changedTalents.add(id);
+            touch();
+        }
+    }
+
+    private int talentSlot(int index) {
+        if (index < 0) return -1;
+        for (int i = 0; i < talentCount; i++) {
+            if (talentIdx[i] == index) return i;
+        }
+        return -1;
+    }
+
+    /** Sets a rank without change tracking (rank <= 0 removes); returns true if it changed. */
+    private boolean putRank(int index, int rank) {
+        short r = (short) Math.min(rank, Short.MAX_VALUE);
+        int i = talentSlot(index);
+        if (rank <= 0) {
+            if (i < 0) return false;
+            int tail = talentCount - i - 1;
+            System.arraycopy(talentIdx, i + 1, talentIdx, i, tail);
+            System.arraycopy(talentRanks, i + 1, talentRanks, i, tail);
+            talentCount--;
+            talentsVersion++;
+            return true;
+        }
+        if (i >= 0) {
+            if (talentRanks[i] == r) return false;
+            talentRanks[i] = r;
+            talentsVersion++;
+            return true;
+        }
+        if (talentCount == talentIdx.length) {
+            int n = Math.max(8, talentCount * 2);
+            talentIdx = Arrays.copyOf(talentIdx, n);
+            talentRanks = Arrays.copyOf(talentRanks, n);
+        }
+        talentIdx[talentCount] = index;
+        talentRanks[talentCount] = r;
+        talentCount++;
+        talentsVersion++;
+        return true;
     }
 
     public void incTalentRank(String id) {
         setTalentRank(id, talentRank(id) + 1);
     }
 
-    public void clearTalents() { talentRanks.clear(); }
+    public void clearTalents() {
+        if (talentCount == 0) return;
+        talentCount = 0;
+        talentsVersion++;
+        changedTalents.clear();
+        rewriteTalents.set(true);
+        touch();
+    }
 
     public boolean hasBranch(String id) { return unlockedBranches.contains(id); }
     public Set<String> unlockedBranches() { return Collections.unmodifiableSet(unlockedBranches); }
-    public void unlockBranch(String id) { if (id != null && !id.isBlank()) unlockedBranches.add(id); }
+    public void unlockBranch(String id) {
+        if (id != null && !id.isBlank() && unlockedBranches.add(id)) {
+            changedBranches.add(id);
+            touch();
+        }
+    }
 
     public int maxMana() { return maxMana; }
-    public void maxMana(int v) { maxMana = Math.max(0, v); mana = Math.min(mana, maxMana); }
+    public void maxMana(int v) {
+        int n = Math.max(0, v);
+        if (n != maxMana) { maxMana = n; touch(); }
+        mana(mana);
+    }
 
     public int maxStamina() { return maxStamina; }
-    public void maxStamina(int v) { maxStamina = Math.max(0, v); stamina = Math.min(stamina, maxStamina); }
+    public void maxStamina(int v) {
+        int n = Math.max(0, v);
+        if (n != maxStamina) { maxStamina = n; touch(); }
+        stamina(stamina);
+    }
 
     public double mana() { return mana; }
-    public void mana(double v) { mana = clamp(v, 0, maxMana); }
+    public void mana(double v) {
+        double n = clamp(v, 0, maxMana);
+        if (n != mana) { mana = n; touch(); }
+    }
 
     public double stamina() { return stamina; }
-    public void stamina(double v) { stamina = clamp(v, 0, maxStamina); }
+    public void stamina(double v) {
+        double n = clamp(v, 0, maxStamina);
+        if (n != stamina) { stamina = n; touch(); }
+    }
+
+    public Map<String, Long> cooldownsUntil() { return Collections.unmodifiableMap(cooldownUntil); }
+    public long gcdUntil() { return gcdUntil; }
+
+    public void cooldownUntil(String skillId, long until) { cooldownUntil(skillId, until, true); }
+
+    /**
+     * Records a cooldown deadline and drops the expired ones, so the map only holds running cooldowns.
+     *
+     * @param markDirty false for cooldowns not worth a write of their own (see {@link #commitCooldowns()})
+     */
+    public void cooldownUntil(String skillId, long until, boolean markDirty) {
+        if (skillId == null || skillId.isBlank()) return;
+        long now = System.currentTimeMillis();
+        cooldownUntil.values().removeIf(u -> u <= now);
+        if (until > now) cooldownUntil.put(skillId, until);
+        cooldownsChanged(markDirty);
+    }
+
+    public void gcdUntil(long until) { gcdUntil(until, true); }
+
+    public void gcdUntil(long until, boolean markDirty) {
+        if (until != gcdUntil) { gcdUntil = until; cooldownsChanged(markDirty); }
+    }
+
+    private void cooldownsChanged(boolean markDirty) {
+        if (markDirty) touch();
+        else cooldownsPending = true;
+    }
+
+    /** Makes the profile dirty if it has cooldown changes no save has picked up yet (quit, shutdown). */
+    public void commitCooldowns() {
+        if (cooldownsPending) {
+            cooldownsPending = false;
+            touch();
+        }
+    }
 
     private static double clamp(double v, double min, double max) {
         return Math.max(min, Math.min(max, v));
     }
 
     public String talentsCsv() {
-        if (talentRanks.isEmpty() && unlockedBranches.isEmpty()) return "";
+        if (talentCount == 0 && unlockedBranches.isEmpty()) return "";
 
         // Keep it stable and backward-compatible.
         // Format tokens:
@@ -102,11 +359,7 @@ public final class PlayerProfile {
         //  - branch:branchId    (reserved for the separate branch plugin)
 
         java.util.List<String> out = new java.util.ArrayList<>();
-        for (Map.Entry<String, Integer> e : talentRanks.entrySet()) {
-            int r = e.getValue() == null ? 0 : e.getValue();
-            if (r <= 0) continue;
-            out.add(e.getKey() + ":" + r);
-        }
+        for (int i = 0; i < talentCount; i++) out.add(talentIdAt(i) + ":" + talentRanks[i]);
         for (String b : unlockedBranches) {
             if (b != null && !b.isBlank()) out.add("branch:" + b);
         }
@@ -114,10 +367,17 @@ public final class PlayerProfile {
         return String.join(",", out);
     }
 
+    /**
+     * Legacy format of the {@code talents} column (now only read for old rows).
+     * Replaces all talents/branches, so the next save rewrites the normalized rows.
+     */
     public void talentsCsv(String csv) {
-        talentRanks.clear();
+        touch();
+        talentCount = 0;
+        talentsVersion++;
         unlockedBranches.clear();
         if (csv == null || csv.isBlank()) return;
+        rewriteTalents.set(true);
         for (String s : csv.split(",")) {
             String id = s.trim();
             if (id.isEmpty()) continue;
@@ -131,7 +391,7 @@ public final class PlayerProfile {
             int colon = id.lastIndexOf(':');
             if (colon <= 0 || colon == id.length() - 1) {
                 // legacy: just an id
-                talentRanks.put(id, 1);
+                putRank(TalentIndex.intern(id), 1);
                 continue;
             }
 
@@ -140,10 +400,10 @@ public final class PlayerProfile {
             if (talentId.isEmpty()) continue;
             try {
                 int rank = Integer.parseInt(rankStr);
-                if (rank > 0) talentRanks.put(talentId, rank);
+                if (rank > 0) putRank(TalentIndex.intern(talentId), rank);
             } catch (NumberFormatException ignored) {
                 // fallback legacy
-                talentRanks.put(id, 1);
+                putRank(TalentIndex.intern(id), 1);
             }
         }
     }
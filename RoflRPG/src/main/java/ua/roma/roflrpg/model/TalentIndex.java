@@ -0,0 +1,27 @@
+package ua.roma.roflrpg.model;
+
+import ua.roma.roflrpg.util.IdInterner;
+
+/**
+ * Talent id <-> dense index, shared by the definitions ({@code TalentDef.index()}) and {@link PlayerProfile}, so
+ * talent ranks and the stats path work on ints.
+ *
+ * <p>Process-wide and append-only: ids read from storage that have no definition (any more) are interned as well
+ * and simply resolve to no {@code TalentDef}. Thread-safe.
+ */
+public final class TalentIndex {
+    private static final IdInterner IDS = new IdInterner();
+
+    private TalentIndex() {}
+
+    public static int intern(String id) { return IDS.intern(id); }
+
+    /** Index of an interned id, or -1. */
+    public static int indexOf(String id) { return IDS.indexOf(id); }
+
+    /** Id for an index, or null if out of range. */
+    public static String idOf(int index) { return IDS.idOf(index); }
+
+    /** Upper bound (exclusive) of the indices handed out so far. */
+    public static int size() { return IDS.size(); }
+}
@@ -0,0 +1,98 @@
+package ua.roma.roflrpg.services;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Skill cooldown/GCD deadlines (epoch millis) in primitive arrays.
+ *
+ * <p>Each online player gets a slot on their first cast; per-skill deadlines live in {@code cooldownUntil[slot][skillIndex]}
+ * (see {@link ua.roma.roflrpg.defs.SkillDef#index()}). Reads don't allocate: look the slot up once with
+ * {@link #slotOf(UUID)} and query as many skills as needed. Slots are recycled on {@link #release(UUID)}.
+ *
+ * <p>Per-frame readers (the HUD) can keep a looked-up slot for as long as {@link #slotsVersion()} is unchanged; it
+ * only moves when a slot is assigned or freed, so they skip the map lookup on almost every frame.
+ *
+ * <p>Main thread only.
+ */
+public final class CooldownTable {
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+    private int slotsVersion;
+
+    private long[] gcdUntil = new long[16];
+    private long[][] cooldownUntil = new long[16][];
+
+    /** Slot of the player, or -1 if they have no cooldowns. */
+    public int slotOf(UUID uuid) {
+        Integer slot = slots.get(uuid);
+        return slot == null ? -1 : slot;
+    }
+
+    /** Changes whenever a player gets or loses a slot; until then every {@link #slotOf} result stays valid. */
+    public int slotsVersion() {
+        return slotsVersion;
+    }
+
+    public long cooldownLeftMs(int slot, int skillIndex, long now) {
+        if (slot < 0 || skillIndex < 0) return 0;
+        long[] row = cooldownUntil[slot];
+        if (skillIndex >= row.length) return 0;
+        return Math.max(0, row[skillIndex] - now);
+    }
+
+    public long gcdLeftMs(int slot, long now) {
+        if (slot < 0) return 0;
+        return Math.max(0, gcdUntil[slot] - now);
+    }
+
+    public void setCooldown(UUID uuid, int skillIndex, long until) {
+        if (skillIndex < 0) return;
+        int slot = acquire(uuid);
+        long[] row = cooldownUntil[slot];
+        if (skillIndex >= row.length) {
+            row = Arrays.copyOf(row, Math.max(skillIndex + 1, row.length * 2));
+            cooldownUntil[slot] = row;
+        }
+        row[skillIndex] = until;
+    }
+
+    public void setGcd(UUID uuid, long until) {
+        gcdUntil[acquire(uuid)] = until;
+    }
+
+    /** Frees the player's slot (on quit). */
+    public void release(UUID uuid) {
+        Integer slot = slots.remove(uuid);
+        if (slot == null) return;
+        slotsVersion++;
+        gcdUntil[slot] = 0;
+        Arrays.fill(cooldownUntil[slot], 0);
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int acquire(UUID uuid) {
+        Integer existing = slots.get(uuid);
+        if (existing != null) return existing;
+
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = nextSlot++;
+            if (slot == gcdUntil.length) {
+                gcdUntil = Arrays.copyOf(gcdUntil, slot * 2);
+                cooldownUntil = Arrays.copyOf(cooldownUntil, slot * 2);
+            }
+            cooldownUntil[slot] = new long[8];
+        }
+        slots.put(uuid, slot);
+        slotsVersion++;
+        return slot;
+    }
+}
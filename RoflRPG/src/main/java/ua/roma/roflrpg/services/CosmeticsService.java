@@ -43,7 +43,8 @@ public final class CosmeticsService {
     }
 
     public void applyAura(Player p) {
-        PlayerProfile prof = profiles.ensureLoaded(p);
+        PlayerProfile prof = profiles.get(p);
+        if (prof == null) return;
         RaceDef race = defs.race(prof.raceId());
         if (race == null || race.auraId() == null) return;
         AuraDef aura = defs.aura(race.auraId());
@@ -1,25 +1,68 @@
 package ua.roma.roflrpg.services;
 
+import net.kyori.adventure.text.Component;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
 import ua.roma.roflrpg.RoflRPGPlugin;
 import ua.roma.roflrpg.defs.ClassDef;
 import ua.roma.roflrpg.defs.DefinitionRegistry;
+import ua.roma.roflrpg.defs.RaceDef;
 import ua.roma.roflrpg.defs.SkillDef;
 import ua.roma.roflrpg.model.PlayerProfile;
-import ua.roma.roflrpg.util.Msg;
+import ua.roma.roflrpg.util.ComponentCache;
+import ua.roma.roflrpg.util.MsgTemplate;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Actionbar HUD (level, race/class, resources, hotbar skill cooldowns).
+ *
+ * <p>Runs for every online player every {@code hud.periodTicks}, so the text is assembled without lookups that
+ * don't change between runs: the {@code hud.actionbar} template is compiled once per locale, race/class labels are
+ * resolved and stripped once per locale, and each line is rendered into one reused {@link StringBuilder}.
+ * Both caches are dropped when the language files are reloaded.
+ *
+ * <p>Frames are delta-aware: the exact inputs of the last line (numbers, cooldown seconds, label/template instances)
+ * are kept per player, and if nothing changed the line is neither rendered nor parsed; the last {@link Component} is
+ * only resent every {@code hud.keepAliveTicks} so the actionbar doesn't fade.
+ */
+public final class HudService implements Listener {
+    private static final List<String> VARS =
+            List.of("level", "race", "class", "mana", "maxMana", "stamina", "maxStamina", "cd");
+    private static final int V_LEVEL = 0, V_RACE = 1, V_CLASS = 2, V_MANA = 3, V_MAX_MANA = 4,
+            V_STAMINA = 5, V_MAX_STAMINA = 6, V_CD = 7;
+
+    private static final Pattern MM_TAG = Pattern.compile("<[^>]+>");
+    private static final Pattern LEGACY_CODE = Pattern.compile("§[0-9A-FK-ORa-fk-or]");
 
-public final class HudService {
     private final RoflRPGPlugin plugin;
     private final DefinitionRegistry defs;
     private final ProfileService profiles;
     private final SkillService skills;
     private final LangService lang;
 
+    /** locale -> compiled hud.actionbar */
+    private final Map<String, MsgTemplate> templates = new HashMap<>();
+    /** locale -> (nameMm -> stripped label) */
+    private final Map<String, Map<String, String>> labels = new HashMap<>();
+    private int langGeneration = -1;
+    private int defsGeneration = -1;
+
+    // Reused for every line; the HUD only runs on the main thread.
+    private final StringBuilder line = new StringBuilder(256);
+    private final Row row = new Row();
+
+    private final Map<UUID, Frame> frames = new HashMap<>();
+    private long ticks;
+    private int period;
+
     public HudService(RoflRPGPlugin plugin, DefinitionRegistry defs, ProfileService profiles, SkillService skills, LangService lang) {
         this.plugin = plugin;
         this.defs = defs;
@@ -31,68 +74,197 @@ public final class HudService {
     public void start() {
         if (!plugin.getConfig().getBoolean("hud.enabled", true)) return;
 
-        int period = Math.max(1, plugin.getConfig().getInt("hud.periodTicks", 10));
-        plugin.getServer().getScheduler().runTaskTimer(plugin, () -> {
-            if (!plugin.getConfig().getBoolean("hud.actionbar", true)) return;
-
-            for (Player p : plugin.getServer().getOnlinePlayers()) {
-                PlayerProfile prof = profiles.ensureLoaded(p);
-
-                String raceName = "-";
-                var race = defs.race(prof.raceId());
-                if (race != null) raceName = stripTags(lang.resolve(p, race.nameMm()));
-
-                String className = "-";
-                var clazz = defs.clazz(prof.classId());
-                if (clazz != null) className = stripTags(lang.resolve(p, clazz.nameMm()));
-
-                // Cooldowns for CTRL+RMB skills in slots 1..9
-                List<String> cds = new ArrayList<>();
-                if (clazz != null) {
-                    List<SkillDef> slotSkills = skillsByTrigger(clazz, SkillDef.Trigger.Z);
-                    int slots = Math.max(1, plugin.getConfig().getInt("hud.slots", 9));
-                    for (int i = 0; i < Math.min(slots, slotSkills.size()); i++) {
-                        SkillDef s = slotSkills.get(i);
-                        long left = skills.cooldownLeftMs(p, s.id());
-                        if (left <= 0) {
-                            cds.add("<green>" + (i + 1) + ":✓</green>");
-                        } else {
-                            long sec = Math.max(1, (left + 999) / 1000);
-                            cds.add("<yellow>" + (i + 1) + ":" + sec + "s</yellow>");
-                        }
-                    }
-                }
+        period = Math.max(1, plugin.getConfig().getInt("hud.periodTicks", 10));
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::render, 10L, period);
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent e) {
+        frames.remove(e.getPlayer().getUniqueId());
+    }
+
+    private void render() {
+        if (!plugin.getConfig().getBoolean("hud.actionbar", true)) return;
+
+        if (langGeneration != lang.generation() || defsGeneration != defs.generation()) {
+            langGeneration = lang.generation();
+            defsGeneration = defs.generation();
+            templates.clear();
+            labels.clear();
+            frames.clear();
+        }
+        ticks += period;
+        long keepAlive = Math.max(1, plugin.getConfig().getLong("hud.keepAliveTicks", 40));
 
-                String cdPart = cds.isEmpty() ? "" : (" <dark_gray>|</dark_gray> <gold>CD</gold> " + String.join(" ", cds));
+        row.slots = Math.max(1, plugin.getConfig().getInt("hud.slots", 9));
+        row.cooldowns = skills.cooldowns();
+        row.now = System.currentTimeMillis();
 
-                String line = lang.tr(p, "hud.actionbar", Map.of(
-                        "level", String.valueOf(prof.level()),
-                        "race", raceName,
-                        "class", className,
-                        "mana", String.valueOf((int) Math.round(prof.mana())),
-                        "maxMana", String.valueOf((int) Math.round(prof.maxMana())),
-                        "stamina", String.valueOf((int) Math.round(prof.stamina())),
-                        "maxStamina", String.valueOf((int) Math.round(prof.maxStamina())),
-                        "cd", cdPart
-                ));
+        for (Player p : plugin.getServer().getOnlinePlayers()) {
+            PlayerProfile prof = profiles.get(p);
+            if (prof == null) continue;
 
-                Msg.actionbar(p, line);
+            String loc = lang.locale(p);
+            RaceDef race = defs.race(prof.raceId());
+            ClassDef clazz = defs.clazz(prof.classId());
+
+            row.prof = prof;
+            row.raceName = race == null ? "-" : label(loc, race.nameMm());
+            row.className = clazz == null ? "-" : label(loc, clazz.nameMm());
+            row.slotSkills = clazz == null ? null : clazz.skillsFor(SkillDef.Trigger.Z);
+            MsgTemplate template = template(loc);
+
+            Frame f = frames.computeIfAbsent(p.getUniqueId(), k -> new Frame());
+            row.cdSlot = f.cooldownSlot(row.cooldowns, p.getUniqueId());
+            if (f.update(template, row)) {
+                line.setLength(0);
+                template.render(line, row);
+                // Different text almost every time; caching it would only evict useful entries.
+                f.component = ComponentCache.parseUncached(line.toString());
+            } else if (ticks - f.sentAt < keepAlive) {
+                continue;
             }
-        }, 10L, period);
+            f.sentAt = ticks;
+            p.sendActionBar(f.component);
+        }
+        row.prof = null;
     }
 
-    private List<SkillDef> skillsByTrigger(ClassDef clazz, SkillDef.Trigger trigger) {
-        List<SkillDef> out = new ArrayList<>();
-        for (String sid : clazz.skillIds()) {
-            SkillDef s = defs.skill(sid);
-            if (s != null && s.trigger() == trigger) out.add(s);
+    private MsgTemplate template(String locale) {
+        MsgTemplate t = templates.get(locale);
+        if (t == null) {
+            t = MsgTemplate.compile(lang.tr(locale, "hud.actionbar"), VARS);
+            templates.put(locale, t);
         }
-        return out;
+        return t;
+    }
+
+    private String label(String locale, String nameMm) {
+        return labels.computeIfAbsent(locale, k -> new HashMap<>())
+                .computeIfAbsent(nameMm, k -> stripTags(lang.resolve(locale, k)));
     }
 
     // quick remove MM tags for compact HUD labels
     private static String stripTags(String mm) {
         if (mm == null) return "";
-        return mm.replaceAll("<[^>]+>", "").replaceAll("§[0-9A-FK-ORa-fk-or]", "").trim();
+        return LEGACY_CODE.matcher(MM_TAG.matcher(mm).replaceAll("")).replaceAll("").trim();
+    }
+
+    /** Last line sent to a player and the inputs it was rendered from. */
+    private static final class Frame {
+        MsgTemplate template;
+        String raceName;
+        String className;
+        long[] inputs = new long[16];
+        int inputCount = -1;
+        Component component;
+        long sentAt;
+        /** Cooldown table slot, valid while the table's {@code slotsVersion} equals {@code cdSlotsVersion}. */
+        int cdSlot = -1;
+        int cdSlotsVersion = -1;
+
+        int cooldownSlot(CooldownTable table, UUID uuid) {
+            int v = table.slotsVersion();
+            if (v != cdSlotsVersion) {
+                cdSlot = table.slotOf(uuid);
+                cdSlotsVersion = v;
+            }
+            return cdSlot;
+        }
+
+        /** Stores the row's inputs; returns true if they differ from the previous frame. */
+        boolean update(MsgTemplate t, Row row) {
+            boolean changed = component == null || t != template
+                    || !row.raceName.equals(raceName) || !row.className.equals(className);
+            template = t;
+            raceName = row.raceName;
+            className = row.className;
+
+            int n = row.inputCount();
+            if (inputs.length < n) {
+                inputs = Arrays.copyOf(inputs, n);
+                changed = true;
+            }
+            if (n != inputCount) changed = true;
+            inputCount = n;
+            for (int i = 0; i < n; i++) {
+                long v = row.input(i);
+                if (inputs[i] != v) {
+                    inputs[i] = v;
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+    }
+
+    /** Values of the line being rendered. */
+    private static final class Row implements MsgTemplate.Values {
+        PlayerProfile prof;
+        String raceName;
+        String className;
+        SkillDef[] slotSkills;
+        CooldownTable cooldowns;
+        int cdSlot;
+        int slots;
+        long now;
+
+        @Override
+        public void append(StringBuilder out, int slot) {
+            switch (slot) {
+                case V_LEVEL -> out.append(prof.level());
+                case V_RACE -> out.append(raceName);
+                case V_CLASS -> out.append(className);
+                case V_MANA -> out.append((int) Math.round(prof.mana()));
+                case V_MAX_MANA -> out.append(prof.maxMana());
+                case V_STAMINA -> out.append((int) Math.round(prof.stamina()));
+                case V_MAX_STAMINA -> out.append(prof.maxStamina());
+                case V_CD -> appendCooldowns(out);
+                default -> { }
+            }
+        }
+
+        private int cdCount() {
+            return slotSkills == null ? 0 : Math.min(slots, slotSkills.length);
+        }
+
+        /** Seconds shown for a hotbar slot, 0 = ready. */
+        private long cdSeconds(int i) {
+            long left = cooldowns.cooldownLeftMs(cdSlot, slotSkills[i].index(), now);
+            return left <= 0 ? 0 : Math.max(1, (left + 999) / 1000);
+        }
+
+        /** Everything the rendered text depends on besides the labels, as numbers. */
+        int inputCount() {
+            return 5 + cdCount();
+        }
+
+        long input(int i) {
+            return switch (i) {
+                case 0 -> prof.level();
+                case 1 -> Math.round(prof.mana());
+                case 2 -> prof.maxMana();
+                case 3 -> Math.round(prof.stamina());
+                case 4 -> prof.maxStamina();
+                default -> cdSeconds(i - 5);
+            };
+        }
+
+        // Cooldowns for Z (hotbar) skills in slots 1..9
+        private void appendCooldowns(StringBuilder out) {
+            int n = cdCount();
+            if (n == 0) return;
+
+            out.append(" <dark_gray>|</dark_gray> <gold>CD</gold>");
+            for (int i = 0; i < n; i++) {
+                long sec = cdSeconds(i);
+                out.append(' ');
+                if (sec == 0) {
+                    out.append("<green>").append(i + 1).append(":✓</green>");
+                } else {
+                    out.append("<yellow>").append(i + 1).append(':').append(sec).append("s</yellow>");
+                }
+            }
+        }
     }
 }
@@ -2,22 +2,39 @@ package ua.roma.roflrpg.services;
 
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLocaleChangeEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import ua.roma.roflrpg.util.Msg;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Lightweight localization service.
  *
- * <p>Supports language files in {@code plugins/RoflRPG/lang/}.
- * The project ships with at least:
+ * <p>Every language file in {@code plugins/RoflRPG/lang/} is loaded; its name is the locale code.
+ * Keys missing in a locale fall back to {@code lang.default}. The project ships with at least:
  * <ul>
  *   <li>{@code uk_UA.yaml}</li>
  *   <li>{@code en_US.yaml}</li>
@@ -28,32 +45,128 @@ import java.util.Map;
  * <pre>
  * name: "@defs.classes.warrior.name"
  * </pre>
+ *
+ * <p>The locale of each online player is resolved once (on join, or on first use after a /reload) and then updated
+ * from {@link PlayerLocaleChangeEvent}, so {@link #locale(Player)} is a map lookup.
  */
-public final class LangService {
+public final class LangService implements Listener {
+    /** Locales shipped in the jar; copied to the data folder if missing. */
+    private static final List<String> BUNDLED = List.of("uk_UA", "en_US");
+
     private final JavaPlugin plugin;
-    private final Map<String, YamlConfiguration> bundles = new HashMap<>();
 
-    /** Default language when player locale can't be detected. */
-    private final String defaultLocale = "uk_UA";
+    /**
+     * Immutable, flattened translations. Each locale's map already contains the default locale's strings for
+     * keys it lacks, so a lookup is a single probe. Replaced as a whole by {@link #load()}.
+     */
+    private record Tables(String defaultLocale, Map<String, Map<String, String>> byLocale,
+                          Map<String, String> byLowerCode, Map<String, String> byLanguage, Map<String, String> byCountry) {}
+
+    private volatile Tables tables = new Tables("uk_UA", Map.of(), Map.of(), Map.of(), Map.of());
+
+    /** Player -> normalized locale code. */
+    private final Map<UUID, String> playerLocales = new ConcurrentHashMap<>();
+
+    /** {@code Player#locale()} (Paper, returns java.util.Locale) or {@code getLocale()} (Spigot, String); null if neither. */
+    private static final MethodHandle LOCALE_GETTER = localeGetter();
+
+    /** Bumped on every {@link #load()}, so callers can drop text they derived from the old bundles. */
+    private volatile int generation;
 
     public LangService(JavaPlugin plugin) {
         this.plugin = plugin;
     }
 
+    /**
+     * Loads every {@code lang/*.yaml} (or legacy {@code *.yml}) file of the data folder; the file name is the locale
+     * code. Safe to call again for a reload.
+     *
+     * <p>Configuration: lang.default
+     */
     public void load() {
         // Ship at least these two locales in resources.
-        loadBundle("uk_UA");
-        loadBundle("en_US");
+        for (String code : BUNDLED) resolveLangFile(code);
+
+        Map<String, Map<String, String>> flat = new LinkedHashMap<>();
+        File[] files = new File(plugin.getDataFolder(), "lang").listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File f : files) {
+                String name = f.getName();
+                String code;
+                if (name.endsWith(".yaml")) code = name.substring(0, name.length() - 5);
+                else if (name.endsWith(".yml")) code = name.substring(0, name.length() - 4);
+                else continue;
+                if (code.isEmpty() || flat.containsKey(code)) continue;
+                flat.put(code, loadBundle(resolveLangFile(code)));
+            }
+        }
+
+        String def = plugin.getConfig().getString("lang.default", "uk_UA");
+        if (!flat.containsKey(def)) {
+            String fallback = flat.containsKey("uk_UA") || flat.isEmpty() ? "uk_UA" : flat.keySet().iterator().next();
+            plugin.getLogger().warning("[Lang] lang.default '" + def + "' has no file in lang/, using " + fallback);
+            def = fallback;
+        }
+
+        Map<String, String> defaults = flat.getOrDefault(def, Map.of());
+        Map<String, Map<String, String>> merged = new HashMap<>();
+        Map<String, String> byLowerCode = new HashMap<>();
+        Map<String, String> byLanguage = new HashMap<>();
+        Map<String, String> byCountry = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> e : flat.entrySet()) {
+            String code = e.getKey();
+            Map<String, String> m = new HashMap<>(defaults);
+            m.putAll(e.getValue());
+            merged.put(code, Map.copyOf(m));
+
+            String lower = code.toLowerCase(Locale.ROOT).replace('-', '_');
+            byLowerCode.put(lower, code);
+            int us = lower.indexOf('_');
+            byLanguage.putIfAbsent(us < 0 ? lower : lower.substring(0, us), code);
+            if (us > 0) byCountry.putIfAbsent(lower.substring(us + 1), code);
+        }
+
+        tables = new Tables(def, Map.copyOf(merged), Map.copyOf(byLowerCode), Map.copyOf(byLanguage), Map.copyOf(byCountry));
+        // Normalized codes depend on which locales exist.
+        playerLocales.clear();
+        generation++;
+        plugin.getLogger().info("[Lang] Loaded locales " + flat.keySet() + " (default " + def + ")");
     }
 
-    private void loadBundle(String code) {
-        File f = resolveLangFile(code);
+    public int generation() {
+        return generation;
+    }
+
+    public Collection<String> locales() {
+        return tables.byLocale().keySet();
+    }
+
+    /** Every translated string of every locale that is used as is (no {@code {var}} placeholders). */
+    public List<String> constantStrings() {
+        Set<String> out = new HashSet<>();
+        for (Map<String, String> m : tables.byLocale().values()) {
+            for (String v : m.values()) {
+                if (v.indexOf('{') < 0) out.add(v);
+            }
+        }
+        return new ArrayList<>(out);
+    }
+
+    /** Reads a bundle and flattens it to full key -> string. */
+    private Map<String, String> loadBundle(File f) {
         YamlConfiguration yml = YamlConfiguration.loadConfiguration(f);
 
         // Small one-time migration for old configs that still show bind-hint in actionbar.
         migrateHudActionbar(f, yml);
 
-        bundles.put(code, yml);
+        Map<String, String> out = new HashMap<>();
+        for (String key : yml.getKeys(true)) {
+            if (!yml.isString(key)) continue;
+            String v = yml.getString(key);
+            if (v != null) out.put(key, v);
+        }
+        return out;
     }
 
     /**
@@ -68,7 +181,7 @@ public final class LangService {
         if (yml.exists()) return yml;
 
         // Otherwise copy defaults from jar.
-        ensure("lang/" + code + ".yaml");
+        if (BUNDLED.contains(code)) ensure("lang/" + code + ".yaml");
         return yaml;
     }
 
@@ -113,49 +226,91 @@ public final class LangService {
      * Returns normalized locale code used by this plugin, e.g. {@code uk_UA} or {@code en_US}.
      */
     public String locale(Player p) {
-        String raw = null;
+        String loc = playerLocales.get(p.getUniqueId());
+        if (loc == null) {
+            loc = normalize(clientLocale(p));
+            if (p.isOnline()) playerLocales.put(p.getUniqueId(), loc);
+        }
+        return loc;
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent e) {
+        Player p = e.getPlayer();
+        playerLocales.put(p.getUniqueId(), normalize(clientLocale(p)));
+    }
 
-        // Paper/Spigot expose player locale, but method name differs across versions.
-        // Reflection keeps compilation stable if API changes.
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLocaleChange(PlayerLocaleChangeEvent e) {
+        Locale l = e.locale();
+        playerLocales.put(e.getPlayer().getUniqueId(), normalize(l == null ? null : l.toString()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        playerLocales.remove(e.getPlayer().getUniqueId());
+    }
+
+    // Paper/Spigot expose player locale, but method name and type differ across versions.
+    // Looked up once; a method handle keeps compilation stable if the API changes.
+    private static MethodHandle localeGetter() {
+        for (String name : new String[]{"locale", "getLocale"}) {
+            try {
+                Method m = Player.class.getMethod(name);
+                return MethodHandles.publicLookup().unreflect(m).asType(MethodType.methodType(Object.class, Player.class));
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+            }
+        }
+        return null;
+    }
+
+    private static String clientLocale(Player p) {
+        if (LOCALE_GETTER == null) return null;
         try {
-            Method m = p.getClass().getMethod("locale");
-            Object o = m.invoke(p);
-            if (o instanceof String s) raw = s;
+            Object o = LOCALE_GETTER.invokeExact(p);
+            if (o instanceof Locale l) return l.toString();
+            if (o instanceof String s) return s;
         } catch (Throwable ignored) {
         }
+        return null;
+    }
 
-        if (raw == null || raw.isBlank()) return defaultLocale;
+    /**
+     * Maps a client locale to a loaded one: exact code, then same language (en_GB -> en_US), then same country
+     * (ru_UA -> uk_UA), then the default.
+     */
+    private String normalize(String raw) {
+        Tables t = tables;
+        if (raw == null || raw.isBlank()) return t.defaultLocale();
 
         String norm = raw.replace('-', '_').toLowerCase(Locale.ROOT);
+        String code = t.byLowerCode().get(norm);
+        if (code != null) return code;
 
-        if (norm.startsWith("uk") || norm.contains("_ua") || norm.contains("uk_")) return "uk_UA";
-        if (norm.startsWith("en") || norm.contains("en_")) return "en_US";
+        int us = norm.indexOf('_');
+        code = t.byLanguage().get(us < 0 ? norm : norm.substring(0, us));
+        if (code != null) return code;
+        if (us > 0) {
+            code = t.byCountry().get(norm.substring(us + 1));
+            if (code != null) return code;
+        }
 
         // Fallback for any other locale.
-        return defaultLocale;
+        return t.defaultLocale();
     }
 
-    private YamlConfiguration bundle(Player p) {
-        String loc = locale(p);
-        YamlConfiguration b = bundles.get(loc);
-        if (b != null) return b;
-        return bundles.getOrDefault(defaultLocale, null);
+    public String tr(Player p, String key) {
+        return tr(locale(p), key);
     }
 
-    public String tr(Player p, String key) {
+    /** @param locale a code returned by {@link #locale(Player)} */
+    public String tr(String locale, String key) {
         if (key == null) return "";
-        YamlConfiguration b = bundle(p);
-        if (b != null) {
-            String v = b.getString(key);
-            if (v != null) return v;
-        }
-        // fallback to default locale
-        YamlConfiguration def = bundles.get(defaultLocale);
-        if (def != null) {
-            String v = def.getString(key);
-            if (v != null) return v;
-        }
-        return key;
+        Tables t = tables;
+        Map<String, String> m = t.byLocale().get(locale);
+        if (m == null) m = t.byLocale().get(t.defaultLocale());
+        String v = m == null ? null : m.get(key);
+        return v != null ? v : key;
     }
 
     public String tr(Player p, String key, Map<String, String> vars) {
@@ -164,8 +319,12 @@ public final class LangService {
 
     /** Resolves MiniMessage strings like "@key.path" through language files. */
     public String resolve(Player p, String maybeKey) {
+        return resolve(locale(p), maybeKey);
+    }
+
+    public String resolve(String locale, String maybeKey) {
         if (maybeKey == null) return "";
-        if (maybeKey.startsWith("@")) return tr(p, maybeKey.substring(1));
+        if (maybeKey.startsWith("@")) return tr(locale, maybeKey.substring(1));
         return maybeKey;
     }
 
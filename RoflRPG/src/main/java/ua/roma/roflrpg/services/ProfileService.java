@@ -1,59 +1,559 @@
 package ua.roma.roflrpg.services;
 
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitTask;
 import ua.roma.roflrpg.RoflRPGPlugin;
 import ua.roma.roflrpg.defs.DefinitionRegistry;
 import ua.roma.roflrpg.model.PlayerProfile;
-import ua.roma.roflrpg.storage.SQLiteDataStore;
+import ua.roma.roflrpg.storage.DataStore;
+import ua.roma.roflrpg.storage.ProfileJournal;
+import ua.roma.roflrpg.util.Msg;
 
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 
+/**
+ * Profile cache + loading pipeline.
+ *
+ * <p>Profiles are prefetched on {@link AsyncPlayerPreLoginEvent} on a dedicated I/O thread, so by the time
+ * {@link PlayerJoinEvent} fires the profile is already in the cache. Tick code (HUD, regen, skills) must use
+ * {@link #get(Player)} and simply skip players whose profile is not there yet; only commands/GUI may fall back to
+ * the synchronous {@link #ensureLoaded(Player)}.
+ *
+ * <p>Saving is write-behind: {@link #save(Player)} only queues the player. Every
+ * {@code storage.writeBehind.flushTicks} the queue is drained on the main thread into detached
+ * {@link PlayerProfile#snapshot() snapshots}, which a dedicated writer thread persists. Several mutations
+ * between two flushes therefore collapse into a single write.
+ *
+ * <p>The cache is bounded: profiles of players who left stay cached for {@code storage.cache.offlineGraceSeconds}
+ * (so a relog is free) and are then evicted once written; at most {@code storage.cache.maxOfflineProfiles} offline
+ * profiles are kept, oldest first out. {@code storage.cache.maxProfiles} caps the whole cache: above it, offline
+ * profiles are evicted early, and if that is not enough (online players, or changes that can't be written because
+ * the database is down) a warning is logged instead of dropping unsaved data. Admin tools read offline players through {@link #loadOffline(UUID)}, which
+ * never adds to the cache. With a {@link DataStore#shared() shared} store the player may have played on another server
+ * in the meantime, so a pre-login compares the cached copy's row version with the database and reloads if it is
+ * stale; the store itself refuses to save stale copies.
+ *
+ * <p>Changes that nobody queued (regen, xp) are picked up by the incremental autosave: every
+ * {@code storage.autosave.intervalSeconds} a round over all dirty profiles starts, and at most
+ * {@code storage.autosave.profilesPerTick} of them are written per tick, so there is no save spike.
+ * Between autosaves, dirty profiles are appended to a {@link ProfileJournal} every
+ * {@code storage.journal.intervalTicks}; the journal is replayed into the database on the next start if the server
+ * went down without {@link #flushAll()}.
+ */
 public final class ProfileService implements Listener {
     private final RoflRPGPlugin plugin;
-    private final SQLiteDataStore store;
+    private final DataStore store;
     private final DefinitionRegistry defs;
 
     private final Map<UUID, PlayerProfile> cache = new ConcurrentHashMap<>();
 
-    public ProfileService(RoflRPGPlugin plugin, SQLiteDataStore store, DefinitionRegistry defs) {
+    /** Quit time (millis) of cached players who are offline. Main thread only. */
+    private final Map<UUID, Long> offlineSince = new LinkedHashMap<>();
+
+    /**
+     * Players between a prefetching pre-login and their join (value: pre-login time in millis). Their profile is
+     * never evicted, so the join doesn't fall back to a blocking load. Entries older than
+     * {@link #PENDING_JOIN_MILLIS} belong to logins that never completed and are dropped.
+     */
+    private final Map<UUID, Long> pendingJoin = new ConcurrentHashMap<>();
+    private static final long PENDING_JOIN_MILLIS = 60_000L;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** Players with pending changes. Concurrent: failed writes are re-queued from the writer thread. */
+    private final Set<UUID> writeQueue = ConcurrentHashMap.newKeySet();
+
+    /** Loads; sized by the store (1 for SQLite, pool size for MySQL). */
+    private final ExecutorService io;
+    /** Single thread so that snapshots of one player are always written in order. */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> thread(r, "RoflRPG-Writer"));
+
+    private BukkitTask tickTask;
+    private long ticks;
+    private long flushTicks;
+    private long offlineGraceMillis;
+    private int maxOfflineProfiles;
+    private int maxProfiles;
+    private long lastCapWarning;
+
+    /** Current autosave round; a new one starts every {@link #autosaveIntervalTicks}. Main thread only. */
+    private final ArrayDeque<UUID> autosaveRound = new ArrayDeque<>();
+    private long autosaveIntervalTicks;
+    private int autosavePerTick;
+    private long nextAutosaveTick;
+
+    /** Crash journal (null if disabled). Written only on the writer thread. */
+    private ProfileJournal journal;
+    /** Profile version last appended to the journal. Main thread only. */
+    private final Map<UUID, Long> journaledVersion = new HashMap<>();
+    private long journalIntervalTicks;
+    private long journalCompactBytes;
+
+    /** Cache counters for {@code /rpgadmin cache}. */
+    public record CacheStats(int cached, int offline, long hits, long misses, long evictions) {}
+
+    public ProfileService(RoflRPGPlugin plugin, DataStore store, DefinitionRegistry defs) {
         this.plugin = plugin;
         this.store = store;
         this.defs = defs;
+
+        AtomicInteger n = new AtomicInteger();
+        this.io = Executors.newFixedThreadPool(Math.max(1, store.maxConcurrency()),
+                r -> thread(r, "RoflRPG-IO-" + n.incrementAndGet()));
     }
 
+    /** Non-blocking lookup. Returns null if the profile is not loaded (yet). */
     public PlayerProfile get(Player p) {
         return cache.get(p.getUniqueId());
     }
 
+    /**
+     * Loads a profile on the I/O thread. Completes with the cached instance if the player is already loaded
+     * (e.g. a quick relog), so in-memory progress always wins over the database copy.
+     */
+    public CompletableFuture<PlayerProfile> loadAsync(UUID uuid, String name) {
+        PlayerProfile cached = cache.get(uuid);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        misses.increment();
+        return CompletableFuture.supplyAsync(() -> store.load(uuid, name), io)
+                .thenApply(prof -> {
+                    PlayerProfile prev = cache.putIfAbsent(uuid, prof);
+                    return prev != null ? prev : prof;
+                });
+    }
+
+    /**
+     * Synchronous fallback for code paths that need a profile right now (commands, GUI clicks).
+     * Normally a cache hit, because joins are prefetched.
+     */
     public PlayerProfile ensureLoaded(Player p) {
-        return cache.computeIfAbsent(p.getUniqueId(), id -> {
-            PlayerProfile prof = store.load(id, p.getName());
-            if (!defs.hasRace(prof.raceId())) prof.raceId("human");
-            if (!defs.hasClass(prof.classId())) prof.classId("guest");
-            return prof;
+        PlayerProfile prof = cache.get(p.getUniqueId());
+        if (prof == null) {
+            misses.increment();
+            prof = cache.computeIfAbsent(p.getUniqueId(), id -> store.load(id, p.getName()));
+        }
+        return sanitize(prof);
+    }
+
+    /**
+     * Reads a profile for admin tools, whether or not the player is online. A cached profile is returned as is
+     * (the live instance); otherwise it is read on the I/O thread and <b>not</b> cached, so changes to it are not
+     * saved. Completes with null if the player never joined.
+     */
+    public CompletableFuture<PlayerProfile> loadOffline(UUID uuid) {
+        PlayerProfile cached = cache.get(uuid);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.increment();
+        return CompletableFuture.supplyAsync(() -> store.find(uuid, null), io);
+    }
+
+    public CacheStats cacheStats() {
+        return new CacheStats(cache.size(), offlineSince.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    /**
+     * Replays the crash journal (if the last shutdown was unclean) and starts the write-behind flush, eviction,
+     * autosave and journal loop.
+     *
+     * <p>Configuration:
+     * <ul>
+     *   <li>storage.writeBehind.flushTicks (ticks)</li>
+     *   <li>storage.cache.offlineGraceSeconds</li>
+     *   <li>storage.cache.maxOfflineProfiles, storage.cache.maxProfiles</li>
+     *   <li>storage.autosave.intervalSeconds, storage.autosave.profilesPerTick</li>
+     *   <li>storage.journal.enabled, storage.journal.intervalTicks, storage.journal.compactKb, storage.journal.fsync</li>
+     * </ul>
+     */
+    public void start() {
+        if (tickTask != null) tickTask.cancel();
+        FileConfiguration cfg = plugin.getConfig();
+        flushTicks = Math.max(1, cfg.getLong("storage.writeBehind.flushTicks", 100));
+        offlineGraceMillis = Math.max(0, cfg.getLong("storage.cache.offlineGraceSeconds", 300)) * 1000L;
+        maxOfflineProfiles = Math.max(0, cfg.getInt("storage.cache.maxOfflineProfiles", 500));
+        maxProfiles = Math.max(1, cfg.getInt("storage.cache.maxProfiles", 2000));
+        autosaveIntervalTicks = Math.max(0, cfg.getLong("storage.autosave.intervalSeconds", 300)) * 20L;
+        autosavePerTick = Math.max(1, cfg.getInt("storage.autosave.profilesPerTick", 4));
+        journalIntervalTicks = Math.max(1, cfg.getLong("storage.journal.intervalTicks", 20));
+        journalCompactBytes = Math.max(64, cfg.getLong("storage.journal.compactKb", 4096)) * 1024L;
+
+        if (journal == null) {
+            File file = new File(plugin.getDataFolder(), "journal.bin");
+            ProfileJournal j = new ProfileJournal(file, cfg.getBoolean("storage.journal.fsync", false));
+            recover(j);
+            if (cfg.getBoolean("storage.journal.enabled", true)) journal = j;
+        }
+
+        ticks = 0;
+        nextAutosaveTick = autosaveIntervalTicks;
+        tickTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    /**
+     * Writes the newest journaled state of every player back to the store, except players whose database row was
+     * saved again since (e.g. on another server sharing a MySQL database). Startup only, blocking.
+     */
+    private void recover(ProfileJournal j) {
+        if (!j.exists()) return;
+        try {
+            Map<UUID, PlayerProfile> replayed = j.replay();
+            // The database may have older talent rows; replace them wholesale.
+            for (PlayerProfile prof : replayed.values()) prof.requestTalentRewrite();
+            long started = System.nanoTime();
+            int written = store.replayAll(replayed.values());
+            j.delete();
+            plugin.getLogger().warning("Last shutdown was unclean: recovered " + written + " profiles from the journal in "
+                    + (System.nanoTime() - started) / 1_000_000 + " ms");
+            if (written < replayed.size()) {
+                plugin.getLogger().warning("Skipped " + (replayed.size() - written)
+                        + " journaled profiles whose database row is newer (saved elsewhere after the crash)");
+            }
+        } catch (Exception ex) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to replay journal.bin, keeping it for the next start", ex);
+        }
+    }
+
+    private void tick() {
+        ticks++;
+        if (ticks % flushTicks == 0) {
+            flushQueued();
+            evictIdle();
+            maybeCompactJournal();
+        }
+        if (autosaveIntervalTicks > 0) autosaveStep();
+        if (journal != null && ticks % journalIntervalTicks == 0) journalDirty();
+    }
+
+    /** Writes up to {@code autosavePerTick} dirty profiles of the current round. */
+    private void autosaveStep() {
+        if (autosaveRound.isEmpty()) {
+            if (ticks < nextAutosaveTick) return;
+            nextAutosaveTick = ticks + autosaveIntervalTicks;
+            for (Map.Entry<UUID, PlayerProfile> e : cache.entrySet()) {
+                if (e.getValue().isDirty()) autosaveRound.add(e.getKey());
+            }
+        }
+
+        List<PlayerProfile> batch = new ArrayList<>(autosavePerTick);
+        while (batch.size() < autosavePerTick && !autosaveRound.isEmpty()) {
+            UUID uuid = autosaveRound.poll();
+            PlayerProfile prof = cache.get(uuid);
+            if (prof != null && prof.isDirty()) {
+                writeQueue.remove(uuid);
+                batch.add(prof);
+            }
+        }
+        write(batch);
+    }
+
+    /** Appends profiles that changed since they were last journaled. */
+    private void journalDirty() {
+        List<PlayerProfile> copies = new ArrayList<>();
+        for (PlayerProfile prof : cache.values()) {
+            if (!prof.isDirty()) continue;
+            Long last = journaledVersion.put(prof.uuid(), prof.version());
+            if (last == null || last != prof.version()) copies.add(prof.copy());
+        }
+        if (copies.isEmpty()) return;
+
+        ProfileJournal j = journal;
+        writer.execute(() -> {
+            try {
+                j.append(copies);
+            } catch (Exception ex) {
+                plugin.getLogger().log(Level.WARNING, "Failed to append to the profile journal", ex);
+            }
         });
     }
 
+    /**
+     * Starts the journal over once it is large, or drops it once everything is saved. The new journal holds the
+     * current state of every dirty profile; clean profiles are already in the database.
+     */
+    private void maybeCompactJournal() {
+        if (journal == null || journal.size() == 0) return;
+
+        List<PlayerProfile> copies = new ArrayList<>();
+        for (PlayerProfile prof : cache.values()) {
+            if (prof.isDirty()) copies.add(prof.copy());
+        }
+        if (!copies.isEmpty() && journal.size() < journalCompactBytes) return;
+
+        ProfileJournal j = journal;
+        writer.execute(() -> {
+            try {
+                j.rewrite(copies);
+            } catch (Exception ex) {
+                plugin.getLogger().log(Level.WARNING, "Failed to compact the profile journal", ex);
+            }
+        });
+    }
+
+    /**
+     * Drops offline profiles past the grace period, and the oldest ones above the size limits. Profiles with
+     * unsaved or in-flight changes stay until the writer has persisted them. Main thread only.
+     */
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        if (!offlineSince.isEmpty()) evictOffline(now);
+
+        if (cache.size() > maxProfiles && now - lastCapWarning >= 60_000L) {
+            lastCapWarning = now;
+            long unsaved = cache.values().stream().filter(PlayerProfile::isDirty).count();
+            plugin.getLogger().warning("Profile cache holds " + cache.size() + " profiles (storage.cache.maxProfiles: "
+                    + maxProfiles + "); " + unsaved + " have unsaved changes and " + offlineSince.size()
+                    + " are offline. Unsaved profiles are kept until the database accepts them.");
+        }
+    }
+
+    private void evictOffline(long now) {
+        int excess = Math.max(offlineSince.size() - maxOfflineProfiles, cache.size() - maxProfiles);
+
+        // Insertion order = quit order, so the oldest entries come first.
+        for (Iterator<Map.Entry<UUID, Long>> it = offlineSince.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<UUID, Long> e = it.next();
+            boolean expired = now - e.getValue() >= offlineGraceMillis;
+            if (!expired && excess <= 0) break;
+
+            UUID uuid = e.getKey();
+            if (isPendingJoin(uuid, now)) continue;
+            if (plugin.getServer().getPlayer(uuid) != null) {
+                it.remove();
+                excess--;
+                continue;
+            }
+            PlayerProfile prof = cache.get(uuid);
+            if (prof != null && (prof.isDirty() || writeQueue.contains(uuid))) continue;
+
+            it.remove();
+            excess--;
+            journaledVersion.remove(uuid);
+            if (prof != null && cache.remove(uuid, prof)) evictions.increment();
+        }
+    }
+
+    private boolean isPendingJoin(UUID uuid, long now) {
+        Long since = pendingJoin.get(uuid);
+        if (since == null) return false;
+        if (now - since < PENDING_JOIN_MILLIS) return true;
+        pendingJoin.remove(uuid, since);
+        return false;
+    }
+
+    /** Queues the player's profile for the next write-behind flush. */
     public void save(Player p) {
-        PlayerProfile prof = cache.get(p.getUniqueId());
-        if (prof != null) store.save(prof);
+        if (cache.containsKey(p.getUniqueId())) writeQueue.add(p.getUniqueId());
     }
 
+    /** Drains the write queue. Main thread only (snapshots must not race with mutations). */
+    public void flushQueued() {
+        if (writeQueue.isEmpty()) return;
+
+        List<PlayerProfile> batch = new ArrayList<>();
+        for (Iterator<UUID> it = writeQueue.iterator(); it.hasNext(); ) {
+            PlayerProfile prof = cache.get(it.next());
+            it.remove();
+            if (prof != null && prof.isDirty()) batch.add(prof);
+        }
+        write(batch);
+    }
+
+    /**
+     * Final drain for {@code onDisable}: writes every dirty profile and waits for the I/O threads to finish.
+     */
     public void flushAll() {
-        cache.values().forEach(store::save);
+        if (tickTask != null) tickTask.cancel();
+        tickTask = null;
+        writeQueue.clear();
+        autosaveRound.clear();
+
+        List<PlayerProfile> batch = new ArrayList<>();
+        for (PlayerProfile prof : cache.values()) {
+            prof.commitCooldowns();
+            if (prof.isDirty()) batch.add(prof);
+        }
+        long started = System.nanoTime();
+        write(batch);
+
+        shutdown(io);
+        shutdown(writer);
+        if (!batch.isEmpty()) {
+            plugin.getLogger().info("Saved " + batch.size() + " profiles in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+        }
+        closeJournal();
         cache.clear();
+        offlineSince.clear();
+        pendingJoin.clear();
+        journaledVersion.clear();
+    }
+
+    /** The journal may only go away if the final flush really got everything into the database. */
+    private void closeJournal() {
+        if (journal == null) return;
+        boolean clean = writeQueue.isEmpty() && cache.values().stream().noneMatch(PlayerProfile::isDirty);
+        try {
+            if (clean) journal.delete();
+            else plugin.getLogger().warning("Some profiles could not be saved; they will be restored from the journal on next start");
+        } catch (Exception ex) {
+            plugin.getLogger().log(Level.WARNING, "Failed to delete the profile journal", ex);
+        }
+        journal.close();
+        journal = null;
+    }
+
+    private void write(List<PlayerProfile> profiles) {
+        if (profiles.isEmpty()) return;
+
+        List<PlayerProfile> snapshots = new ArrayList<>(profiles.size());
+        for (PlayerProfile prof : profiles) {
+            snapshots.add(prof.snapshot());
+            if (journal != null) journaledVersion.put(prof.uuid(), prof.version());
+        }
+
+        ProfileJournal j = journal;
+        writer.execute(() -> {
+            long started = System.nanoTime();
+            // Journal first: its newest record of a player must never be older than the database row.
+            if (j != null) {
+                try {
+                    j.append(snapshots);
+                } catch (Exception ex) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to append to the profile journal", ex);
+                }
+            }
+            try {
+                int rows = store.saveAll(snapshots);
+                // Skipped rows belong to stale copies (saved on another server since); retrying can't help.
+                for (int i = 0; i < snapshots.size(); i++) profiles.get(i).markSaved(snapshots.get(i).version());
+                if (rows < snapshots.size()) {
+                    plugin.getLogger().warning("Skipped " + (snapshots.size() - rows)
+                            + " stale profiles: another server saved them after they were loaded here");
+                }
+                if (plugin.getLogger().isLoggable(Level.FINE)) {
+                    plugin.getLogger().fine("Flushed " + rows + " profiles in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+                }
+            } catch (Exception ex) {
+                plugin.getLogger().log(Level.WARNING, "Failed to save " + snapshots.size() + " profiles, will retry", ex);
+                // The snapshots took the pending talent changes with them; rewrite talents in full next time.
+                for (PlayerProfile prof : profiles) prof.requestTalentRewrite();
+                for (PlayerProfile snap : snapshots) writeQueue.add(snap.uuid());
+            }
+        });
+    }
+
+    private void shutdown(ExecutorService ex) {
+        ex.shutdown();
+        try {
+            if (!ex.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out waiting for profile I/O to finish");
+                ex.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread thread(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /** Definitions may have changed since the profile was saved; fall back to the defaults. */
+    private PlayerProfile sanitize(PlayerProfile prof) {
+        if (!defs.hasRace(prof.raceId())) prof.raceId("human");
+        if (!defs.hasClass(prof.classId())) prof.classId("guest");
+        return prof;
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPreLogin(AsyncPlayerPreLoginEvent e) {
+        if (e.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        // Pin first, so eviction can't drop the profile between now and the join.
+        UUID uuid = e.getUniqueId();
+        pendingJoin.put(uuid, System.currentTimeMillis());
+
+        // We're already off the main thread here; block this login thread (not the tick) until the I/O thread is done.
+        try {
+            PlayerProfile cached = cache.get(uuid);
+            if (cached != null && store.shared() && savedElsewhere(cached)) {
+                if (cached.isDirty()) {
+                    plugin.getLogger().warning("Dropping unsaved cached changes of " + e.getName()
+                            + ": another server saved the profile since");
+                }
+                cache.remove(uuid, cached);
+            }
+            PlayerProfile prof = loadAsync(uuid, e.getName()).join();
+            // An eviction that was already running when we pinned may have removed the cached instance.
+            if (cache.get(uuid) != prof) loadAsync(uuid, e.getName()).join();
+        } catch (Exception ex) {
+            pendingJoin.remove(uuid);
+            plugin.getLogger().log(Level.SEVERE, "Failed to load profile for " + e.getName(), ex);
+            e.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, Msg.mm(plugin.uiPrefix() + "<red>Failed to load your profile, try again.</red>"));
+        }
+    }
+
+    /**
+     * True if another server saved the player after this copy was loaded (they left, played there and came back
+     * within the grace period). A copy whose own write is still in flight has the higher version and is kept.
+     */
+    private boolean savedElsewhere(PlayerProfile prof) {
+        return CompletableFuture.supplyAsync(() -> store.rowVersion(prof.uuid()), io).join() > prof.rowVersion();
+    }
+
+    /** A later plugin may still deny the login; don't let the prefetched profile stay pinned in the cache. */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLoginDenied(AsyncPlayerPreLoginEvent e) {
+        if (e.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        UUID uuid = e.getUniqueId();
+        pendingJoin.remove(uuid);
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            if (cache.containsKey(uuid) && plugin.getServer().getPlayer(uuid) == null) {
+                offlineSince.putIfAbsent(uuid, System.currentTimeMillis());
+            }
+        });
     }
 
     @EventHandler
     public void onJoin(PlayerJoinEvent e) {
         Player p = e.getPlayer();
+        offlineSince.remove(p.getUniqueId());
         PlayerProfile prof = ensureLoaded(p);
+        pendingJoin.remove(p.getUniqueId());
+        prof.lastKnownName(p.getName());
 
         // ensure resources valid
         prof.maxMana(Math.max(100, prof.maxMana()));
@@ -62,8 +562,15 @@ public final class ProfileService implements Listener {
         prof.stamina(prof.stamina());
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.MONITOR)
     public void onQuit(PlayerQuitEvent e) {
-        save(e.getPlayer());
+        // Don't wait for the next flush: a quick relog or a restart should see fresh data.
+        UUID uuid = e.getPlayer().getUniqueId();
+        PlayerProfile prof = cache.get(uuid);
+        if (prof == null) return;
+        prof.commitCooldowns();
+        if (prof.isDirty()) write(List.of(prof));
+        offlineSince.remove(uuid);
+        offlineSince.put(uuid, System.currentTimeMillis());
     }
 }
@@ -52,8 +52,8 @@ public final class ResourceService {
 
         regenTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
             for (Player p : Bukkit.getOnlinePlayers()) {
-                PlayerProfile prof = profiles.ensureLoaded(p);
-                regen(prof, manaRegen, staminaRegen);
+                PlayerProfile prof = profiles.get(p);
+                if (prof != null) regen(prof, manaRegen, staminaRegen);
             }
         }, periodTicks, periodTicks);
     }
@@ -71,7 +71,8 @@ public final class ResourceService {
     public boolean trySpend(Player p, ResourceCost cost) {
         if (cost == null || cost.type() == ResourceType.NONE) return true;
 
-        PlayerProfile prof = profiles.ensureLoaded(p);
+        PlayerProfile prof = profiles.get(p);
+        if (prof == null) return false;
 
         return switch (cost.type()) {
             case MANA -> {
@@ -1,7 +1,11 @@
 package ua.roma.roflrpg.services;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
 import ua.roma.roflrpg.api.RoflRPGApi;
 import ua.roma.roflrpg.api.SkillHandler;
 import ua.roma.roflrpg.api.events.BranchUnlockEvent;
@@ -9,6 +13,7 @@ import ua.roma.roflrpg.defs.DefinitionRegistry;
 import ua.roma.roflrpg.defs.TalentDef;
 import ua.roma.roflrpg.model.PlayerProfile;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -27,11 +32,13 @@ public final class RoflRPGApiImpl implements RoflRPGApi {
     private ProfileService profiles;
     private StatsService stats;
     private DefinitionRegistry defs;
+    private SpatialIndex spatial;
 
-    public void bind(ProfileService profiles, StatsService stats, DefinitionRegistry defs) {
+    public void bind(ProfileService profiles, StatsService stats, DefinitionRegistry defs, SpatialIndex spatial) {
         this.profiles = profiles;
         this.stats = stats;
         this.defs = defs;
+        this.spatial = spatial;
     }
 
     // ------------------------------------------------------------
@@ -100,7 +107,7 @@ public final class RoflRPGApiImpl implements RoflRPGApi {
 
         // Persist + re-apply derived stats.
         if (profiles != null) profiles.save(player);
-        if (stats != null) stats.applyAll(player);
+        if (stats != null) stats.talentRankChanged(player, talentId, current);
         return true;
     }
 
@@ -133,6 +140,22 @@ public final class RoflRPGApiImpl implements RoflRPGApi {
         return profile(player).hasBranch(branchId);
     }
 
+    // ------------------------------------------------------------
+    // Targeting
+    // ------------------------------------------------------------
+
+    @Override
+    public List<LivingEntity> nearbyLiving(Location center, double radius, Entity exclude) {
+        if (center == null || spatial == null) return List.of();
+        return spatial.sphere(center, radius, exclude);
+    }
+
+    @Override
+    public List<LivingEntity> coneLiving(Location origin, Vector direction, double range, double angleDeg, Entity exclude) {
+        if (origin == null || direction == null || spatial == null) return List.of();
+        return spatial.cone(origin, direction, range, angleDeg, exclude);
+    }
+
     // ------------------------------------------------------------
     // Internal helpers
     // ------------------------------------------------------------
@@ -6,9 +6,12 @@ import org.bukkit.attribute.Attribute;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerSwapHandItemsEvent;
 import org.bukkit.event.player.PlayerToggleSneakEvent;
 import org.bukkit.inventory.EquipmentSlot;
@@ -16,17 +19,18 @@ import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.util.Vector;
 import ua.roma.roflrpg.RoflRPGPlugin;
+import ua.roma.roflrpg.api.CastTargets;
 import ua.roma.roflrpg.api.RoflRPGApi;
 import ua.roma.roflrpg.api.SkillCastContext;
 import ua.roma.roflrpg.api.SkillHandler;
 import ua.roma.roflrpg.defs.ClassDef;
 import ua.roma.roflrpg.defs.DefinitionRegistry;
 import ua.roma.roflrpg.defs.SkillDef;
+import ua.roma.roflrpg.defs.SkillEffect;
 import ua.roma.roflrpg.model.PlayerProfile;
 import ua.roma.roflrpg.util.Msg;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -60,9 +64,11 @@ public final class SkillService implements Listener {
     private final CinematicsService cinematics;
     private final RoflRPGApi api;
 
-    // Cooldown state is kept in-memory; persistence is optional and can be implemented later.
-    private final Map<UUID, Long> gcdUntil = new HashMap<>();
-    private final Map<String, Map<UUID, Long>> cooldownUntil = new HashMap<>();
+    // Live cooldowns of online players. Every cast also records the deadlines in the profile, which is how they
+    // survive relogs and restarts (restored on join). Only cooldowns of at least storage.cooldowns.persistMinSeconds
+    // make the profile dirty; shorter ones are saved with the next write (at the latest on quit).
+    private final CooldownTable cooldowns = new CooldownTable();
+    private long persistCooldownMs = 30_000L;
 
     public SkillService(RoflRPGPlugin plugin,
                         DefinitionRegistry defs,
@@ -78,6 +84,15 @@ public final class SkillService implements Listener {
         this.api = api;
     }
 
+    /**
+     * Reads the settings used on every cast; call again after a config reload.
+     *
+     * <p>Configuration: storage.cooldowns.persistMinSeconds
+     */
+    public void start() {
+        persistCooldownMs = Math.max(0, plugin.getConfig().getLong("storage.cooldowns.persistMinSeconds", 30)) * 1000L;
+    }
+
     /**
      * Some servers want to disable certain input combos.
      * See config.yml: skills.enabledTriggers
@@ -95,18 +110,46 @@ public final class SkillService implements Listener {
         return false;
     }
 
+    /** For per-tick readers (HUD): look the player's slot up once, then query each skill. */
+    public CooldownTable cooldowns() {
+        return cooldowns;
+    }
+
     public long cooldownLeftMs(Player p, String skillId) {
-        long now = System.currentTimeMillis();
-        Map<UUID, Long> map = cooldownUntil.get(skillId);
-        if (map == null) return 0;
-        long until = map.getOrDefault(p.getUniqueId(), 0L);
-        return Math.max(0, until - now);
+        return cooldowns.cooldownLeftMs(cooldowns.slotOf(p.getUniqueId()), defs.skillIndex(skillId), System.currentTimeMillis());
+    }
+
+    public long cooldownLeftMs(Player p, SkillDef s) {
+        return cooldowns.cooldownLeftMs(cooldowns.slotOf(p.getUniqueId()), s.index(), System.currentTimeMillis());
     }
 
     public long gcdLeftMs(Player p) {
+        return cooldowns.gcdLeftMs(cooldowns.slotOf(p.getUniqueId()), System.currentTimeMillis());
+    }
+
+    /** Runs after ProfileService has made sure the profile is loaded. */
+    @EventHandler(priority = EventPriority.HIGH)
+    public void onJoin(PlayerJoinEvent e) {
+        restoreCooldowns(e.getPlayer());
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent e) {
+        // Safe to drop: the profile has the deadlines.
+        cooldowns.release(e.getPlayer().getUniqueId());
+    }
+
+    /** Copies the running cooldowns stored in the profile into the live table. */
+    public void restoreCooldowns(Player p) {
+        PlayerProfile prof = profiles.get(p);
+        if (prof == null) return;
+
+        UUID uuid = p.getUniqueId();
         long now = System.currentTimeMillis();
-        long until = gcdUntil.getOrDefault(p.getUniqueId(), 0L);
-        return Math.max(0, until - now);
+        if (prof.gcdUntil() > now) cooldowns.setGcd(uuid, prof.gcdUntil());
+        for (Map.Entry<String, Long> e : prof.cooldownsUntil().entrySet()) {
+            if (e.getValue() > now) cooldowns.setCooldown(uuid, defs.skillIndex(e.getKey()), e.getValue());
+        }
     }
 
     // ---------------------------------------------------------------------
@@ -167,23 +210,16 @@ public final class SkillService implements Listener {
      * Slot index must be within the list size (no wrap-around).
      */
     private boolean castByHotbarSlot(Player p, SkillDef.Trigger trigger) {
-        PlayerProfile prof = profiles.ensureLoaded(p);
+        PlayerProfile prof = profiles.get(p);
+        if (prof == null) return false;
         ClassDef clazz = defs.clazz(prof.classId());
         if (clazz == null) return false;
 
-        List<SkillDef> matching = new ArrayList<>();
-        for (String sid : clazz.skillIds()) {
-            SkillDef s = defs.skill(sid);
-            if (s == null) continue;
-            if (s.trigger() != trigger) continue;
-            matching.add(s);
-        }
-        if (matching.isEmpty()) return false;
-
+        SkillDef[] slotSkills = clazz.skillsFor(trigger);
         int slot = p.getInventory().getHeldItemSlot();
-        if (slot < 0 || slot >= matching.size()) return false;
+        if (slot < 0 || slot >= slotSkills.length) return false;
 
-        return cast(p, prof, matching.get(slot));
+        return cast(p, prof, slotSkills[slot]);
     }
 
     // ---------------------------------------------------------------------
@@ -201,19 +237,21 @@ public final class SkillService implements Listener {
             return false;
         }
 
-        applyCooldowns(p, s, now);
+        applyCooldowns(p, prof, s, now);
 
         // Resolve a primary target early (works for both built-in effects and addon handlers).
         SkillDef.Target targetSpec = (s.target() != null) ? s.target() : new SkillDef.Target(SkillDef.Target.Type.SELF, 0);
         LivingEntity primaryTarget = resolvePrimaryTarget(p, targetSpec);
+        CastTargets targets = new CastTargets(p, targetSpec, primaryTarget, api);
 
         // Cinematics (timeline): cast phase.
         cinematics.play(p, s, primaryTarget, "cast");
 
-        boolean handled = tryHandleByAddon(p, prof, s, primaryTarget);
+        boolean handled = tryHandleByAddon(p, prof, s, targets);
 
         if (!handled) {
-            executeBuiltinEffects(p, primaryTarget, targetSpec, s);
+            // The built-in executor's cone is narrower than the addons'; the query hasn't run yet.
+            executeBuiltinEffects(p, new CastTargets(p, targetSpec, primaryTarget, api, SkillDef.Target.BUILTIN_CONE_ANGLE), s);
         }
 
         // Timeline phases after the main effect application.
@@ -233,17 +271,15 @@ public final class SkillService implements Listener {
 
     private boolean isOnGcd(Player p, SkillDef s, long now) {
         // Global cooldown: if any previous skill started GCD, block all skills.
-        Long gcd = gcdUntil.get(p.getUniqueId());
-        return gcd != null && gcd > now;
+        return cooldowns.gcdLeftMs(cooldowns.slotOf(p.getUniqueId()), now) > 0;
     }
 
     private boolean isOnCooldown(Player p, SkillDef s, long now) {
-        long until = cooldownUntil.computeIfAbsent(s.id(), k -> new HashMap<>())
-                .getOrDefault(p.getUniqueId(), 0L);
-        if (until <= now) return false;
+        long leftMs = cooldowns.cooldownLeftMs(cooldowns.slotOf(p.getUniqueId()), s.index(), now);
+        if (leftMs <= 0) return false;
 
-        long left = Math.max(0, (until - now) / 1000);
-        Msg.send(p, plugin.uiPrefix(), "<gray>Cooldown: " + left + "s</gray>");
+        long left = leftMs / 1000;
+        Msg.sendUncached(p, plugin.uiPrefix(), "<gray>Cooldown: " + left + "s</gray>");
         return true;
     }
 
@@ -253,15 +289,21 @@ public final class SkillService implements Listener {
         return false;
     }
 
-    private void applyCooldowns(Player p, SkillDef s, long now) {
+    private void applyCooldowns(Player p, PlayerProfile prof, SkillDef s, long now) {
         long gcdMs = s.gcdTicks() * 50L;
         long cdMs = s.cooldownTicks() * 50L;
 
-        if (gcdMs > 0) gcdUntil.put(p.getUniqueId(), now + gcdMs);
-        if (cdMs > 0) cooldownUntil.computeIfAbsent(s.id(), k -> new HashMap<>()).put(p.getUniqueId(), now + cdMs);
+        if (gcdMs > 0) {
+            cooldowns.setGcd(p.getUniqueId(), now + gcdMs);
+            prof.gcdUntil(now + gcdMs, gcdMs >= persistCooldownMs);
+        }
+        if (cdMs > 0) {
+            cooldowns.setCooldown(p.getUniqueId(), s.index(), now + cdMs);
+            prof.cooldownUntil(s.id(), now + cdMs, cdMs >= persistCooldownMs);
+        }
     }
 
-    private boolean tryHandleByAddon(Player caster, PlayerProfile prof, SkillDef s, LivingEntity primaryTarget) {
+    private boolean tryHandleByAddon(Player caster, PlayerProfile prof, SkillDef s, CastTargets targets) {
         String handlerId = s.handlerId();
         if (handlerId == null || handlerId.isBlank()) return false;
 
@@ -274,7 +316,7 @@ public final class SkillService implements Listener {
             return false;
         }
 
-        SkillCastContext ctx = new SkillCastContext(plugin, defs, profiles, resources, caster, prof, s, primaryTarget);
+        SkillCastContext ctx = new SkillCastContext(plugin, defs, profiles, resources, caster, prof, s, targets);
         h.cast(ctx);
         return true;
     }
@@ -283,67 +325,52 @@ public final class SkillService implements Listener {
     // Built-in (legacy) effects
     // ---------------------------------------------------------------------
 
-    private void executeBuiltinEffects(Player caster, LivingEntity primaryTarget, SkillDef.Target targetSpec, SkillDef s) {
-        if (s.effects() == null) return;
+    private void executeBuiltinEffects(Player caster, CastTargets targets, SkillDef s) {
+        if (s.effectOps() == null) return;
 
-        for (Map<String, Object> eff : s.effects()) {
-            String type = String.valueOf(eff.getOrDefault("type", "NONE")).toUpperCase(Locale.ROOT);
-            switch (type) {
-                case "HEAL", "HEAL_SELF" -> {
-                    double amt = dbl(eff.getOrDefault("amount", 4.0));
-                    heal(caster, amt);
-                }
-                case "HEAL_TARGET" -> {
-                    double amt = dbl(eff.getOrDefault("amount", 4.0));
-                    for (LivingEntity t : resolveTargets(caster, primaryTarget, targetSpec, true)) {
+        for (SkillEffect eff : s.effectOps()) {
+            switch (eff) {
+                // Unset keys fall back to the legacy built-in defaults.
+                case SkillEffect.Heal h -> heal(caster, SkillEffect.or(h.amount(), 4.0));
+                case SkillEffect.HealTarget h -> {
+                    double amt = SkillEffect.or(h.amount(), 4.0);
+                    for (LivingEntity t : targets.all()) {
                         if (t == caster) heal(caster, amt);
                         else healEntity(t, amt);
                     }
                 }
-                case "DAMAGE" -> {
-                    double amt = dbl(eff.getOrDefault("amount", 4.0));
-                    for (LivingEntity t : resolveTargets(caster, primaryTarget, targetSpec, false)) {
-                        if (t != caster) damage(caster, t, amt);
-                    }
+                case SkillEffect.Damage d -> {
+                    double amt = SkillEffect.or(d.amount(), 4.0);
+                    for (LivingEntity t : targets.others()) damage(caster, t, amt);
                 }
-                case "DAMAGE_RANDOM" -> {
-                    int min = (int) Math.round(dbl(eff.getOrDefault("min", 2)));
-                    int max = (int) Math.round(dbl(eff.getOrDefault("max", 6)));
-                    if (max < min) {
-                        int tmp = min;
-                        min = max;
-                        max = tmp;
-                    }
-                    double amt = ThreadLocalRandom.current().nextInt(min, max + 1);
-                    for (LivingEntity t : resolveTargets(caster, primaryTarget, targetSpec, false)) {
-                        if (t != caster) damage(caster, t, amt);
-                    }
+                case SkillEffect.DamageRandom d -> {
+                    int min = (int) Math.round(SkillEffect.or(d.min(), 2));
+                    int max = (int) Math.round(SkillEffect.or(d.max(), 6));
+                    double amt = ThreadLocalRandom.current().nextInt(Math.min(min, max), Math.max(min, max) + 1);
+                    for (LivingEntity t : targets.others()) damage(caster, t, amt);
                 }
-                case "DASH" -> {
-                    double str = dbl(eff.getOrDefault("strength", 1.0));
-                    dash(caster, str);
-                }
-                case "POTION" -> {
-                    for (LivingEntity t : resolveTargets(caster, primaryTarget, targetSpec, true)) {
-                        applyPotion(t, eff);
+                case SkillEffect.Dash d -> dash(caster, SkillEffect.or(d.strength(), 1.0));
+                case SkillEffect.Potion pot -> {
+                    // Only 'effect' and 'durationTicks' are read here; the aliases are the addon's.
+                    PotionEffectType type = pot.effect() != null ? pot.effect() : PotionEffectType.SPEED;
+                    int duration = (int) Math.round(SkillEffect.or(pot.durationTicks(), 60));
+                    int amplifier = (int) Math.round(pot.amplifier());
+                    for (LivingEntity t : targets.all()) {
+                        t.addPotionEffect(new PotionEffect(type, duration, amplifier, pot.ambient(), pot.particles(), pot.icon()));
                     }
                 }
-                case "KNOCKBACK" -> {
-                    double strength = dbl(eff.getOrDefault("strength", 0.6));
-                    for (LivingEntity t : resolveTargets(caster, primaryTarget, targetSpec, false)) {
-                        if (t != caster) knockback(caster, t, strength);
-                    }
+                case SkillEffect.Knockback k -> {
+                    double strength = SkillEffect.or(k.strength(), 0.6);
+                    for (LivingEntity t : targets.others()) knockback(caster, t, strength);
                 }
-                case "CLEANSE" -> {
+                case SkillEffect.Cleanse c -> {
                     // Cleanse is intentionally limited to SELF/RAY in the base engine.
-                    if (targetSpec.type() == SkillDef.Target.Type.RAY) {
-                        if (primaryTarget != null) cleanse(primaryTarget);
+                    if (targets.spec().type() == SkillDef.Target.Type.RAY) {
+                        if (targets.primary() != null) cleanse(targets.primary());
                     } else {
                         cleanse(caster);
                     }
                 }
-                default -> {
-                }
             }
         }
     }
@@ -361,27 +388,6 @@ public final class SkillService implements Listener {
         };
     }
 
-    /**
-     * Returns targets for built-in effects. Addons can implement their own targeting logic.
-     *
-     * @param includeSelf For some effects (heal/potion) SELF should be included depending on target mode.
-     */
-    private static List<LivingEntity> resolveTargets(Player caster,
-                                                    LivingEntity primaryTarget,
-                                                    SkillDef.Target targetSpec,
-                                                    boolean includeSelf) {
-        return switch (targetSpec.type()) {
-            case SELF -> includeSelf ? List.of(caster) : List.of();
-            case RAY -> {
-                if (primaryTarget == null) yield List.of();
-                if (includeSelf) yield List.of(primaryTarget);
-                yield (primaryTarget == caster) ? List.of() : List.of(primaryTarget);
-            }
-            case CONE -> coneTargets(caster, targetSpec.range(), 70);
-            case AREA -> areaTargets(caster, targetSpec.range());
-        };
-    }
-
     private static boolean hasTimeline(SkillDef s) {
         try {
             if (s == null || s.data() == null) return false;
@@ -413,51 +419,24 @@ public final class SkillService implements Listener {
         le.setHealth(Math.min(max, le.getHealth() + amt));
     }
 
-    private static void applyPotion(LivingEntity le, Map<String, Object> eff) {
-        String raw = String.valueOf(eff.getOrDefault("effect", "SPEED"));
-        PotionEffectType type = resolvePotionType(raw);
-        if (type == null) return;
-
-        int duration = (int) Math.round(dbl(eff.getOrDefault("durationTicks", 60)));
-        int amplifier = (int) Math.round(dbl(eff.getOrDefault("amplifier", 0)));
-        boolean ambient = Boolean.parseBoolean(String.valueOf(eff.getOrDefault("ambient", "false")));
-        boolean particles = Boolean.parseBoolean(String.valueOf(eff.getOrDefault("particles", "true")));
-        boolean icon = Boolean.parseBoolean(String.valueOf(eff.getOrDefault("icon", "true")));
-
-        le.addPotionEffect(new PotionEffect(type, duration, amplifier, ambient, particles, icon));
-    }
-
-    private static PotionEffectType resolvePotionType(String name) {
-        if (name == null) return null;
-        String n = name.trim().toUpperCase(Locale.ROOT);
-        PotionEffectType direct = PotionEffectType.getByName(n);
-        if (direct != null) return direct;
-
-        // Map legacy names to modern enum ids.
-        String alt = switch (n) {
-            case "SLOW" -> "SLOWNESS";
-            case "FAST_DIGGING" -> "HASTE";
-            case "SLOW_DIGGING" -> "MINING_FATIGUE";
-            case "INCREASE_DAMAGE" -> "STRENGTH";
-            case "JUMP" -> "JUMP_BOOST";
-            case "CONFUSION" -> "NAUSEA";
-            case "DAMAGE_RESISTANCE" -> "RESISTANCE";
-            case "HEAL" -> "INSTANT_HEALTH";
-            case "HARM" -> "INSTANT_DAMAGE";
-            default -> n;
-        };
-        return PotionEffectType.getByName(alt);
-    }
+    /** Resolved once; names missing in the running API version are left out. */
+    private static final PotionEffectType[] NEGATIVE_POTIONS = negativePotions();
 
-    private static void cleanse(LivingEntity le) {
+    private static PotionEffectType[] negativePotions() {
         String[] negativeNames = new String[]{
                 "SLOW", "WEAKNESS", "POISON", "BLINDNESS", "NAUSEA", "WITHER", "HUNGER",
                 "MINING_FATIGUE", "INSTANT_DAMAGE", "LEVITATION"
         };
+        List<PotionEffectType> out = new ArrayList<>();
         for (String n : negativeNames) {
             PotionEffectType t = PotionEffectType.getByName(n);
-            if (t != null) le.removePotionEffect(t);
+            if (t != null) out.add(t);
         }
+        return out.toArray(new PotionEffectType[0]);
+    }
+
+    private static void cleanse(LivingEntity le) {
+        for (PotionEffectType t : NEGATIVE_POTIONS) le.removePotionEffect(t);
     }
 
     private static void knockback(Player caster, LivingEntity target, double strength) {
@@ -490,26 +469,6 @@ public final class SkillService implements Listener {
         return (LivingEntity) res.getHitEntity();
     }
 
-    private static List<LivingEntity> areaTargets(Player p, double range) {
-        List<LivingEntity> out = new ArrayList<>();
-        for (var e : p.getNearbyEntities(range, range, range)) {
-            if (e instanceof LivingEntity le && le != p) out.add(le);
-        }
-        return out;
-    }
-
-    private static List<LivingEntity> coneTargets(Player p, double range, double angleDeg) {
-        Vector dir = p.getLocation().getDirection().normalize();
-        double cos = Math.cos(Math.toRadians(angleDeg / 2.0));
-        List<LivingEntity> out = new ArrayList<>();
-        for (var e : p.getNearbyEntities(range, range, range)) {
-            if (!(e instanceof LivingEntity le) || le == p) continue;
-            Vector to = le.getLocation().toVector().subtract(p.getLocation().toVector()).normalize();
-            if (dir.dot(to) >= cos) out.add(le);
-        }
-        return out;
-    }
-
     // ---------------------------------------------------------------------
     // Utils
     // ---------------------------------------------------------------------
@@ -521,13 +480,4 @@ public final class SkillService implements Listener {
         } catch (Exception ignored) {
         }
     }
-
-    private static double dbl(Object o) {
-        if (o instanceof Number n) return n.doubleValue();
-        try {
-            return Double.parseDouble(String.valueOf(o));
-        } catch (Exception e) {
-            return 0;
-        }
-    }
 }
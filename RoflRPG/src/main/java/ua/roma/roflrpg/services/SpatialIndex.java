@@ -0,0 +1,238 @@
+package ua.roma.roflrpg.services;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-world, per-tick chunk buckets of living entities for AoE and cone targeting.
+ *
+ * <p>A query only looks at the chunks its bounding box overlaps. Each chunk is read ({@code Chunk#getEntities()},
+ * loaded chunks only) the first time a query touches it in a tick; later queries in the same tick reuse that
+ * snapshot, so the cost follows the chunks touched, not the size of the world. Distances are compared squared;
+ * cones compare against a precomputed cosine.
+ *
+ * <p>Main thread only.
+ */
+public final class SpatialIndex implements Listener {
+    private final Map<UUID, Grid> grids = new HashMap<>();
+
+    /** Living entities within {@code radius} of {@code center}, excluding {@code exclude} (may be null). */
+    public List<LivingEntity> sphere(Location center, double radius, Entity exclude) {
+        List<LivingEntity> out = new ArrayList<>();
+        if (center.getWorld() == null || radius <= 0) return out;
+        grid(center.getWorld()).query(center.getX(), center.getY(), center.getZ(), radius, null, 0, exclude, out);
+        return out;
+    }
+
+    /**
+     * Living entities within {@code range} of {@code origin} and inside the cone around {@code direction}.
+     *
+     * @param angleDeg full cone angle in degrees
+     */
+    public List<LivingEntity> cone(Location origin, Vector direction, double range, double angleDeg, Entity exclude) {
+        List<LivingEntity> out = new ArrayList<>();
+        if (origin.getWorld() == null || range <= 0) return out;
+        grid(origin.getWorld()).query(origin.getX(), origin.getY(), origin.getZ(), range,
+                direction.clone().normalize(), coneCos(angleDeg), exclude, out);
+        return out;
+    }
+
+    /** Cosine of the half angle: what {@link Grid#query} compares against for a cone of {@code angleDeg} (full). */
+    static double coneCos(double angleDeg) {
+        return Math.cos(Math.toRadians(angleDeg / 2.0));
+    }
+
+    private Grid grid(World w) {
+        Grid g = grids.computeIfAbsent(w.getUID(), k -> new Grid(w));
+        int tick = Bukkit.getCurrentTick();
+        if (g.tick != tick) {
+            g.reset();
+            g.tick = tick;
+        }
+        return g;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent e) {
+        grids.remove(e.getWorld().getUID());
+    }
+
+    private static long chunkKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Entities of the chunks read this tick as parallel arrays; each chunk is a contiguous range
+     * {@code [bucketStart, bucketEnd)}, found through {@link #chunks}.
+     */
+    static final class Grid {
+        private final World world;
+        int tick = Integer.MIN_VALUE;
+
+        int size;
+        LivingEntity[] entities = new LivingEntity[64];
+        double[] xs = new double[64];
+        double[] ys = new double[64];
+        double[] zs = new double[64];
+
+        final ChunkTable chunks = new ChunkTable();
+        int buckets;
+        int[] bucketStart = new int[16];
+        int[] bucketEnd = new int[16];
+
+        private final Location scratch = new Location(null, 0, 0, 0);
+
+        Grid(World world) {
+            this.world = world;
+        }
+
+        void reset() {
+            // Drop old references so dead entities can be collected.
+            Arrays.fill(entities, 0, size, null);
+            size = 0;
+            buckets = 0;
+            chunks.clear();
+        }
+
+        /** Bucket of a chunk, reading the chunk on first use this tick (unloaded chunks get an empty bucket). */
+        private int bucket(int cx, int cz) {
+            long key = chunkKey(cx, cz);
+            int b = chunks.get(key);
+            if (b >= 0) return b;
+
+            if (buckets == bucketStart.length) {
+                bucketStart = Arrays.copyOf(bucketStart, buckets * 2);
+                bucketEnd = Arrays.copyOf(bucketEnd, buckets * 2);
+            }
+            b = buckets++;
+            bucketStart[b] = size;
+            if (world.isChunkLoaded(cx, cz)) {
+                for (Entity e : world.getChunkAt(cx, cz).getEntities()) {
+                    if (!(e instanceof LivingEntity le)) continue;
+                    if (size == entities.length) grow();
+                    Location l = le.getLocation(scratch);
+                    entities[size] = le;
+                    xs[size] = l.getX();
+                    ys[size] = l.getY();
+                    zs[size] = l.getZ();
+                    size++;
+                }
+            }
+            bucketEnd[b] = size;
+            chunks.put(key, b);
+            return b;
+        }
+
+        private void grow() {
+            int n = entities.length * 2;
+            entities = Arrays.copyOf(entities, n);
+            xs = Arrays.copyOf(xs, n);
+            ys = Arrays.copyOf(ys, n);
+            zs = Arrays.copyOf(zs, n);
+        }
+
+        /** @param dir normalized cone axis, or null for a sphere */
+        void query(double x, double y, double z, double r, Vector dir, double cos, Entity exclude, List<LivingEntity> out) {
+            double r2 = r * r;
+            int minX = (int) Math.floor(x - r) >> 4, maxX = (int) Math.floor(x + r) >> 4;
+            int minZ = (int) Math.floor(z - r) >> 4, maxZ = (int) Math.floor(z + r) >> 4;
+            double ax = dir == null ? 0 : dir.getX(), ay = dir == null ? 0 : dir.getY(), az = dir == null ? 0 : dir.getZ();
+
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    int b = bucket(cx, cz);
+                    for (int i = bucketStart[b], end = bucketEnd[b]; i < end; i++) {
+                        double dx = xs[i] - x, dy = ys[i] - y, dz = zs[i] - z;
+                        double d2 = dx * dx + dy * dy + dz * dz;
+                        if (d2 > r2) continue;
+                        if (dir != null) {
+                            // dot(dir, to) >= cos * |to|, without normalizing 'to'.
+                            if (d2 < 0.01) continue;
+                            if (ax * dx + ay * dy + az * dz < cos * Math.sqrt(d2)) continue;
+                        }
+                        LivingEntity le = entities[i];
+                        if (le == exclude || le.isDead() || !le.isValid()) continue;
+                        out.add(le);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Open-addressing chunk key -> bucket map without boxing. {@link #clear()} is O(1): entries from earlier ticks
+     * are told apart by their epoch.
+     */
+    static final class ChunkTable {
+        private long[] keys = new long[64];
+        private int[] values = new int[64];
+        private int[] epochs = new int[64];
+        private int epoch = 1;
+        private int size;
+
+        void clear() {
+            size = 0;
+            if (++epoch == 0) {
+                // Wrapped around: old stamps could look current again.
+                Arrays.fill(epochs, 0);
+                epoch = 1;
+            }
+        }
+
+        /** Bucket for the key, or -1. */
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); epochs[i] == epoch; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return -1;
+        }
+
+        /** The key must not be present. */
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) rehash();
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (epochs[i] == epoch) i = (i + 1) & mask;
+            keys[i] = key;
+            values[i] = value;
+            epochs[i] = epoch;
+            size++;
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            int[] oldEpochs = epochs;
+            int live = epoch;
+            keys = new long[oldKeys.length * 2];
+            values = new int[keys.length];
+            epochs = new int[keys.length];
+            epoch = 1;
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldEpochs[i] == live) put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -5,6 +5,10 @@ import org.bukkit.attribute.Attribute;
 import org.bukkit.attribute.AttributeInstance;
 import org.bukkit.attribute.AttributeModifier;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
 import ua.roma.roflrpg.RoflRPGPlugin;
 import ua.roma.roflrpg.defs.ClassDef;
 import ua.roma.roflrpg.defs.DefinitionRegistry;
@@ -13,9 +17,11 @@ import ua.roma.roflrpg.defs.TalentDef;
 import ua.roma.roflrpg.model.PlayerProfile;
 import ua.roma.roflrpg.model.StatKey;
 
-import java.util.EnumMap;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
 
 /**
  * Applies derived stats (race + class + talents) onto Bukkit attributes.
@@ -23,158 +29,265 @@ import java.util.Objects;
  * Stat model:
  *  - addStats: flat additive values
  *  - multipliers: scalar additive values (ADD_SCALAR operation)
+ *
+ * Vectors are {@code double[STATS]} indexed by {@link StatKey#ordinal()}. The race+class baseline of every pair and
+ * the per-rank vector of every talent are built once per definition generation; each player keeps the sum of their
+ * talent ranks, which {@link #talentRankChanged} adjusts by one talent's delta. Modifiers whose amount did not change
+ * are left alone. Main thread only.
  */
-public final class StatsService {
+public final class StatsService implements Listener {
+
+    private static final int STATS = StatKey.values().length;
+    private static final int HP = StatKey.MAX_HEALTH.ordinal();
+    private static final int SPEED = StatKey.MOVEMENT_SPEED.ordinal();
+    private static final int DAMAGE = StatKey.ATTACK_DAMAGE.ordinal();
+    private static final int ARMOR = StatKey.ARMOR.ordinal();
+    private static final int LUCK = StatKey.LUCK.ordinal();
+
+    private static final int BASE_MANA = 100;
+    private static final int BASE_STAMINA = 100;
 
     private final RoflRPGPlugin plugin;
     private final DefinitionRegistry defs;
     private final ProfileService profiles;
 
+    private final NamespacedKey hpAddKey;
+    private final NamespacedKey speedMulKey;
+    private final NamespacedKey speedAddKey;
+    private final NamespacedKey dmgMulKey;
+    private final NamespacedKey dmgAddKey;
+    private final NamespacedKey armorAddKey;
+    private final NamespacedKey luckAddKey;
+    private final NamespacedKey scaleKey;
+
+    private Tables tables;
+    private final Map<UUID, Derived> derived = new HashMap<>();
+
+    // Scratch for baseline + talents, reused by every apply.
+    private final double[] add = new double[STATS];
+    private final double[] mult = new double[STATS];
+
     public StatsService(RoflRPGPlugin plugin, DefinitionRegistry defs, ProfileService profiles) {
         this.plugin = plugin;
         this.defs = defs;
         this.profiles = profiles;
+
+        this.hpAddKey = new NamespacedKey(plugin, "roflrpg_hp_add");
+        this.speedMulKey = new NamespacedKey(plugin, "roflrpg_speed_mul");
+        this.speedAddKey = new NamespacedKey(plugin, "roflrpg_speed_add");
+        this.dmgMulKey = new NamespacedKey(plugin, "roflrpg_dmg_mul");
+        this.dmgAddKey = new NamespacedKey(plugin, "roflrpg_dmg_add");
+        this.armorAddKey = new NamespacedKey(plugin, "roflrpg_armor_add");
+        this.luckAddKey = new NamespacedKey(plugin, "roflrpg_luck_add");
+        this.scaleKey = new NamespacedKey(plugin, "roflrpg_scale");
     }
 
     /**
      * Recomputes and applies all derived stats for the given player.
+     *
+     * <p>The talent sum is only rebuilt if talents or definitions changed since the last apply; race/class changes
+     * just pick another baseline.
      */
     public void applyAll(Player p) {
         PlayerProfile prof = profiles.ensureLoaded(p);
+        Tables t = tables();
 
-        RaceDef race = defs.race(prof.raceId());
-        ClassDef clazz = defs.clazz(prof.classId());
-        if (race == null || clazz == null) return;
+        Derived d = derived.computeIfAbsent(p.getUniqueId(), k -> new Derived());
+        if (!d.matches(prof, t)) d.rebuild(prof, t);
+        push(p, prof, t, d);
+    }
 
-        Map<StatKey, Double> add = new EnumMap<>(StatKey.class);
-        Map<StatKey, Double> mult = new EnumMap<>(StatKey.class);
+    /**
+     * Applies a single talent's rank change (the profile already holds the new rank), in O(stats).
+     * Falls back to {@link #applyAll} if anything else changed since the last apply.
+     */
+    public void talentRankChanged(Player p, String talentId, int oldRank) {
+        talentRankChanged(p, defs.talentIndex(talentId), oldRank);
+    }
 
-        merge(add, race.addStats());
-        merge(mult, race.multipliers());
-        merge(add, clazz.addStats());
-        merge(mult, clazz.multipliers());
+    /** @param talentIndex {@code TalentDef.index()} */
+    public void talentRankChanged(Player p, int talentIndex, int oldRank) {
+        PlayerProfile prof = profiles.ensureLoaded(p);
+        Tables t = tables();
 
-        // Talents: ranks stack.
-        int maxMana = 100;
-        int maxStamina = 100;
+        Derived d = derived.get(p.getUniqueId());
+        int version = prof.talentsVersion();
+        if (d == null || d.profile != prof || d.generation != t.generation
+                || (d.talentsVersion != version && d.talentsVersion != version - 1)) {
+            applyAll(p);
+            return;
+        }
 
-        for (var te : prof.talentRanks().entrySet()) {
-            String tid = te.getKey();
-            int rank = Math.max(0, te.getValue());
-            if (rank <= 0) continue;
+        if (d.talentsVersion != version) {
+            d.addTalent(t, talentIndex, prof.talentRank(talentIndex) - oldRank);
+            d.talentsVersion = version;
+        }
+        push(p, prof, t, d);
+    }
 
-            TalentDef t = defs.talent(tid);
-            if (t == null) continue;
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        derived.remove(e.getPlayer().getUniqueId());
+    }
 
-            if (t.addStats() != null) {
-                for (var e : t.addStats().entrySet()) {
-                    add.merge(e.getKey(), e.getValue() * rank, Double::sum);
-                }
-            }
+    private Tables tables() {
+        int gen = defs.generation();
+        if (tables == null || tables.generation != gen) tables = new Tables(gen, defs);
+        return tables;
+    }
 
-            if (t.multipliers() != null) {
-                for (var e : t.multipliers().entrySet()) {
-                    // Simple approximation: sum multipliers per rank.
-                    mult.merge(e.getKey(), e.getValue() * rank, Double::sum);
-                }
-            }
+    private void push(Player p, PlayerProfile prof, Tables t, Derived d) {
+        int ri = defs.raceIndex(prof.raceId());
+        int ci = defs.classIndex(prof.classId());
+        RaceDef race = defs.race(ri);
+        if (race == null || defs.clazz(ci) == null || ci >= t.classCount) return;
 
-            if (t.maxManaAdd() != null) maxMana += t.maxManaAdd() * rank;
-            if (t.maxStaminaAdd() != null) maxStamina += t.maxStaminaAdd() * rank;
+        int pair = ri * t.classCount + ci;
+        double[] baseAdd = t.baseAdd[pair];
+        double[] baseMult = t.baseMult[pair];
+        for (int k = 0; k < STATS; k++) {
+            add[k] = baseAdd[k] + d.add[k];
+            mult[k] = baseMult[k] + d.mult[k];
         }
 
-        prof.maxMana(maxMana);
-        prof.maxStamina(maxStamina);
+        prof.maxMana(BASE_MANA + d.mana);
+        prof.maxStamina(BASE_STAMINA + d.stamina);
 
         // --- Core attribute mapping ---
         // Paper 1.21.4+ switched Attribute from an enum with GENERIC_* constants
         // to a registry-backed interface with shorter names (MAX_HEALTH, etc.).
-        apply(p, Attribute.MAX_HEALTH,
-                new NamespacedKey(plugin, "roflrpg_hp_add"),
-                add.getOrDefault(StatKey.MAX_HEALTH, 0.0),
-                AttributeModifier.Operation.ADD_NUMBER);
-
-        apply(p, Attribute.MOVEMENT_SPEED,
-                new NamespacedKey(plugin, "roflrpg_speed_mul"),
-                mult.getOrDefault(StatKey.MOVEMENT_SPEED, 0.0),
-                AttributeModifier.Operation.ADD_SCALAR);
-
-        apply(p, Attribute.ATTACK_DAMAGE,
-                new NamespacedKey(plugin, "roflrpg_dmg_mul"),
-                mult.getOrDefault(StatKey.ATTACK_DAMAGE, 0.0),
-                AttributeModifier.Operation.ADD_SCALAR);
-
-        apply(p, Attribute.ARMOR,
-                new NamespacedKey(plugin, "roflrpg_armor_add"),
-                add.getOrDefault(StatKey.ARMOR, 0.0),
-                AttributeModifier.Operation.ADD_NUMBER);
-
-        apply(p, Attribute.LUCK,
-                new NamespacedKey(plugin, "roflrpg_luck_add"),
-                add.getOrDefault(StatKey.LUCK, 0.0),
-                AttributeModifier.Operation.ADD_NUMBER);
-
-        // Optional additive parts.
-        double speedAdd = add.getOrDefault(StatKey.MOVEMENT_SPEED, 0.0);
-        if (speedAdd != 0) {
-            apply(p, Attribute.MOVEMENT_SPEED,
-                    new NamespacedKey(plugin, "roflrpg_speed_add"),
-                    speedAdd,
-                    AttributeModifier.Operation.ADD_NUMBER);
-        } else {
-            remove(p, Attribute.MOVEMENT_SPEED, new NamespacedKey(plugin, "roflrpg_speed_add"));
-        }
+        set(p, Attribute.MAX_HEALTH, hpAddKey, add[HP], AttributeModifier.Operation.ADD_NUMBER);
+        set(p, Attribute.MOVEMENT_SPEED, speedMulKey, mult[SPEED], AttributeModifier.Operation.ADD_SCALAR);
+        set(p, Attribute.ATTACK_DAMAGE, dmgMulKey, mult[DAMAGE], AttributeModifier.Operation.ADD_SCALAR);
+        set(p, Attribute.ARMOR, armorAddKey, add[ARMOR], AttributeModifier.Operation.ADD_NUMBER);
+        set(p, Attribute.LUCK, luckAddKey, add[LUCK], AttributeModifier.Operation.ADD_NUMBER);
 
-        double dmgAdd = add.getOrDefault(StatKey.ATTACK_DAMAGE, 0.0);
-        if (dmgAdd != 0) {
-            apply(p, Attribute.ATTACK_DAMAGE,
-                    new NamespacedKey(plugin, "roflrpg_dmg_add"),
-                    dmgAdd,
-                    AttributeModifier.Operation.ADD_NUMBER);
-        } else {
-            remove(p, Attribute.ATTACK_DAMAGE, new NamespacedKey(plugin, "roflrpg_dmg_add"));
-        }
+        // Optional additive parts (a zero amount removes the modifier).
+        set(p, Attribute.MOVEMENT_SPEED, speedAddKey, add[SPEED], AttributeModifier.Operation.ADD_NUMBER);
+        set(p, Attribute.ATTACK_DAMAGE, dmgAddKey, add[DAMAGE], AttributeModifier.Operation.ADD_NUMBER);
 
         // Scale attribute exists in 1.21+
-        if (plugin.scaleEnabled()) {
-            double sc = race.scale();
-            apply(p, Attribute.SCALE,
-                    new NamespacedKey(plugin, "roflrpg_scale"),
-                    sc - 1.0,
-                    AttributeModifier.Operation.ADD_SCALAR);
-        } else {
-            remove(p, Attribute.SCALE, new NamespacedKey(plugin, "roflrpg_scale"));
-        }
+        double scale = plugin.scaleEnabled() ? race.scale() - 1.0 : 0.0;
+        set(p, Attribute.SCALE, scaleKey, scale, AttributeModifier.Operation.ADD_SCALAR);
 
         // Sync current health with new max.
         double maxHp = Objects.requireNonNull(p.getAttribute(Attribute.MAX_HEALTH)).getValue();
         if (p.getHealth() > maxHp) p.setHealth(maxHp);
     }
 
-    private static void merge(Map<StatKey, Double> into, Map<StatKey, Double> add) {
-        if (add == null) return;
-        for (var e : add.entrySet()) into.merge(e.getKey(), e.getValue(), Double::sum);
-    }
-
-    private static void apply(Player p, Attribute attr, NamespacedKey key, double amount, AttributeModifier.Operation op) {
+    /** Idempotent: replaces the modifier under {@code key} only if the amount changed; 0 removes it. */
+    private static void set(Player p, Attribute attr, NamespacedKey key, double amount, AttributeModifier.Operation op) {
         AttributeInstance inst = p.getAttribute(attr);
         if (inst == null) return;
 
-        // Remove previous modifier with the same key (idempotent reapplies).
-        // Bukkit returns an unmodifiable view for getModifiers(), so we remove via API.
-        for (var m : java.util.List.copyOf(inst.getModifiers())) {
-            if (key.equals(m.getKey())) inst.removeModifier(m);
+        AttributeModifier current = inst.getModifier(key);
+        if (current != null) {
+            if (current.getAmount() == amount && current.getOperation() == op) return;
+            inst.removeModifier(key);
         }
-
         if (amount == 0) return;
         inst.addModifier(new AttributeModifier(key, amount, op));
     }
 
-    private static void remove(Player p, Attribute attr, NamespacedKey key) {
-        AttributeInstance inst = p.getAttribute(attr);
-        if (inst == null) return;
-        for (var m : java.util.List.copyOf(inst.getModifiers())) {
-            if (key.equals(m.getKey())) inst.removeModifier(m);
+    private static void accumulate(double[] into, Map<StatKey, Double> from) {
+        if (from == null) return;
+        for (var e : from.entrySet()) into[e.getKey().ordinal()] += e.getValue();
+    }
+
+    /** Definition-derived vectors for one generation. Missing races/classes/talents get zero vectors. */
+    private static final class Tables {
+        final int generation;
+        final int classCount;
+        /** Indexed by {@code raceIndex * classCount + classIndex}. */
+        final double[][] baseAdd;
+        final double[][] baseMult;
+        /** Per talent index, contribution of one rank. */
+        final double[][] talentAdd;
+        final double[][] talentMult;
+        final int[] talentMana;
+        final int[] talentStamina;
+
+        Tables(int generation, DefinitionRegistry defs) {
+            this.generation = generation;
+
+            int races = defs.raceIndexCount();
+            classCount = defs.classIndexCount();
+            baseAdd = new double[races * classCount][];
+            baseMult = new double[races * classCount][];
+            for (int r = 0; r < races; r++) {
+                RaceDef race = defs.race(r);
+                for (int c = 0; c < classCount; c++) {
+                    ClassDef clazz = defs.clazz(c);
+                    double[] a = new double[STATS];
+                    double[] m = new double[STATS];
+                    if (race != null && clazz != null) {
+                        accumulate(a, race.addStats());
+                        accumulate(m, race.multipliers());
+                        accumulate(a, clazz.addStats());
+                        accumulate(m, clazz.multipliers());
+                    }
+                    baseAdd[r * classCount + c] = a;
+                    baseMult[r * classCount + c] = m;
+                }
+            }
+
+            int talents = defs.talentIndexCount();
+            talentAdd = new double[talents][];
+            talentMult = new double[talents][];
+            talentMana = new int[talents];
+            talentStamina = new int[talents];
+            for (int i = 0; i < talents; i++) {
+                TalentDef t = defs.talent(i);
+                talentAdd[i] = new double[STATS];
+                talentMult[i] = new double[STATS];
+                if (t == null) continue;
+                accumulate(talentAdd[i], t.addStats());
+                // Simple approximation: multipliers sum per rank.
+                accumulate(talentMult[i], t.multipliers());
+                if (t.maxManaAdd() != null) talentMana[i] = t.maxManaAdd();
+                if (t.maxStaminaAdd() != null) talentStamina[i] = t.maxStaminaAdd();
+            }
+        }
+    }
+
+    /** A player's summed talent contributions (ranks stack), tagged with what they were computed from. */
+    private static final class Derived {
+        final double[] add = new double[STATS];
+        final double[] mult = new double[STATS];
+        int mana;
+        int stamina;
+
+        PlayerProfile profile;
+        int generation;
+        int talentsVersion;
+
+        boolean matches(PlayerProfile prof, Tables t) {
+            return profile == prof && generation == t.generation && talentsVersion == prof.talentsVersion();
+        }
+
+        void rebuild(PlayerProfile prof, Tables t) {
+            Arrays.fill(add, 0);
+            Arrays.fill(mult, 0);
+            mana = 0;
+            stamina = 0;
+            for (int i = 0; i < prof.talentCount(); i++) {
+                addTalent(t, prof.talentIndexAt(i), prof.talentRankAt(i));
+            }
+            profile = prof;
+            generation = t.generation;
+            talentsVersion = prof.talentsVersion();
+        }
+
+        void addTalent(Tables t, int index, int ranks) {
+            if (index < 0 || index >= t.talentAdd.length || ranks == 0) return;
+            double[] a = t.talentAdd[index];
+            double[] m = t.talentMult[index];
+            for (int k = 0; k < STATS; k++) {
+                add[k] += a[k] * ranks;
+                mult[k] += m[k] * ranks;
+            }
+            mana += t.talentMana[index] * ranks;
+            stamina += t.talentStamina[index] * ranks;
         }
     }
 }
@@ -0,0 +1,76 @@
+package ua.roma.roflrpg.storage;
+
+import ua.roma.roflrpg.model.PlayerProfile;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Profile persistence backend.
+ *
+ * <p>Selected by {@code storage.type} in config.yml:
+ * <ul>
+ *   <li><b>sqlite</b> - {@link SQLiteDataStore}, a local file (default)</li>
+ *   <li><b>mysql</b> - {@link MySqlDataStore}, a pooled MySQL/MariaDB connection shared by a server network</li>
+ * </ul>
+ *
+ * <p>Implementations are called from the I/O threads of {@code ProfileService}, never from the main thread
+ * in normal operation, and must be thread-safe.
+ */
+public interface DataStore {
+    void init();
+
+    /** Loads the profile, creating (and persisting) a fresh one if the player is new. */
+    default PlayerProfile load(UUID uuid, String name) {
+        PlayerProfile p = find(uuid, name);
+        if (p == null) {
+            p = new PlayerProfile(uuid, name);
+            save(p);
+        }
+        return p;
+    }
+
+    /**
+     * Reads a stored profile without creating one.
+     *
+     * @param name current player name, or null to keep the stored one
+     * @return the profile, or null if the player never joined
+     */
+    PlayerProfile find(UUID uuid, String name);
+
+    void save(PlayerProfile p);
+
+    /**
+     * Writes all profiles in a single transaction. {@link #shared() Shared} stores skip every profile whose row
+     * already has its {@link PlayerProfile#rowVersion()} or a higher one: another server wrote the player after this
+     * copy was loaded, and the copy must not overwrite that progress.
+     *
+     * @return number of rows written
+     */
+    int saveAll(Collection<PlayerProfile> profiles);
+
+    /**
+     * Writes profiles recovered from the crash journal, skipping every player whose row has a higher
+     * {@link PlayerProfile#rowVersion()} than the journaled copy (another server saved newer progress since).
+     * Local backends have no other writer and may simply save everything.
+     *
+     * @return number of profiles written
+     */
+    default int replayAll(Collection<PlayerProfile> profiles) {
+        return saveAll(profiles);
+    }
+
+    /** Whether other servers may write the same rows, so cached profiles can go stale. */
+    default boolean shared() { return false; }
+
+    /**
+     * Current {@code row_version} of a stored profile, or -1 if the player has no row. Used to check whether a
+     * cached profile is still current; only called on {@link #shared()} stores.
+     */
+    default long rowVersion(UUID uuid) { return -1; }
+
+    /** How many loads may usefully run at the same time (size of the load thread pool). */
+    default int maxConcurrency() { return 1; }
+
+    void close();
+}
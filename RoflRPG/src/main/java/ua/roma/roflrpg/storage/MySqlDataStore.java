@@ -0,0 +1,314 @@
+package ua.roma.roflrpg.storage;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.java.JavaPlugin;
+import ua.roma.roflrpg.model.PlayerProfile;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * MySQL/MariaDB profile storage for server networks (several servers share one database).
+ *
+ * <p>Uses a HikariCP pool, so concurrent loads and the write-behind writer each get their own connection.
+ * Any JDBC URL with MySQL-compatible SQL works, e.g. {@code jdbc:mariadb://...} or an in-process
+ * {@code jdbc:h2:mem:rpg;MODE=MySQL} for local testing (the driver must be on the classpath).
+ *
+ * <p>Configuration ({@code storage.mysql.*}):
+ * <ul>
+ *   <li>jdbcUrl - overrides host/port/database when set</li>
+ *   <li>host, port, database, username, password</li>
+ *   <li>driverClassName (optional)</li>
+ *   <li>poolSize, connectionTimeoutMs</li>
+ *   <li>properties - extra driver properties; they override {@link #STATEMENT_CACHE}</li>
+ * </ul>
+ */
+public final class MySqlDataStore implements DataStore {
+    private static final String UPSERT_SQL =
+        "INSERT INTO profiles(" + ProfileRows.COLUMNS + ") " +
+        "VALUES(" + ProfileRows.PLACEHOLDERS + ") " +
+        "ON DUPLICATE KEY UPDATE " +
+        " name=VALUES(name)," +
+        " race=VALUES(race)," +
+        " class=VALUES(class)," +
+        " level=VALUES(level)," +
+        " xp=VALUES(xp)," +
+        " talent_points=VALUES(talent_points)," +
+        " talents=VALUES(talents)," +
+        " max_mana=VALUES(max_mana)," +
+        " max_stamina=VALUES(max_stamina)," +
+        " mana=VALUES(mana)," +
+        " stamina=VALUES(stamina)," +
+        " cooldowns=VALUES(cooldowns)," +
+        " row_version=VALUES(row_version)";
+
+    /**
+     * Driver-side prepared statement cache for MySQL Connector/J and MariaDB, so the statements every load/save
+     * prepares are parsed once per pooled connection. The SQL limit must fit {@link #UPSERT_SQL}. Not applied to
+     * other URLs (H2 rejects unknown properties).
+     */
+    private static final Map<String, String> STATEMENT_CACHE = Map.of(
+            "cachePrepStmts", "true",
+            "prepStmtCacheSize", "64",
+            "prepStmtCacheSqlLimit", "2048",
+            "useServerPrepStmts", "true");
+
+    /** Players per {@code SELECT ... FOR UPDATE} when saving (the IN list is one placeholder per player). */
+    private static final int LOCK_CHUNK = 128;
+
+    private final Supplier<ConfigurationSection> config;
+    private final Logger log;
+    private HikariDataSource pool;
+    private int poolSize;
+
+    public MySqlDataStore(JavaPlugin plugin) {
+        this(() -> plugin.getConfig().getConfigurationSection("storage.mysql"), plugin.getLogger());
+    }
+
+    /** @param config the {@code storage.mysql} section (read on {@link #init()}) */
+    MySqlDataStore(Supplier<ConfigurationSection> config, Logger log) {
+        this.config = config;
+        this.log = log;
+    }
+
+    @Override
+    public void init() {
+        ConfigurationSection cfg = config.get();
+        if (cfg == null) throw new IllegalStateException("storage.type is mysql but storage.mysql is missing in config.yml");
+
+        String url = cfg.getString("jdbcUrl", "");
+        if (url == null || url.isBlank()) {
+            url = "jdbc:mysql://" + cfg.getString("host", "localhost") + ":" + cfg.getInt("port", 3306)
+                    + "/" + cfg.getString("database", "roflrpg");
+        }
+        poolSize = Math.max(2, cfg.getInt("poolSize", 8));
+
+        HikariConfig hc = new HikariConfig();
+        hc.setPoolName("RoflRPG-MySQL");
+        hc.setJdbcUrl(url);
+        hc.setUsername(cfg.getString("username", "root"));
+        hc.setPassword(cfg.getString("password", ""));
+        hc.setMaximumPoolSize(poolSize);
+        hc.setMinimumIdle(Math.min(2, poolSize));
+        hc.setConnectionTimeout(Math.max(250, cfg.getLong("connectionTimeoutMs", 5000)));
+        String driver = cfg.getString("driverClassName", "");
+        if (driver != null && !driver.isBlank()) hc.setDriverClassName(driver);
+        if (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:")) {
+            STATEMENT_CACHE.forEach(hc::addDataSourceProperty);
+        }
+        ConfigurationSection props = cfg.getConfigurationSection("properties");
+        if (props != null) {
+            for (String key : props.getKeys(false)) hc.addDataSourceProperty(key, props.getString(key));
+        }
+
+        try {
+            pool = new HikariDataSource(hc);
+            try (Connection c = pool.getConnection(); Statement st = c.createStatement()) {
+                st.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS profiles (" +
+                    " uuid CHAR(36) NOT NULL PRIMARY KEY," +
+                    " name VARCHAR(64) NOT NULL," +
+                    " race VARCHAR(64) NOT NULL," +
+                    " class VARCHAR(64) NOT NULL," +
+                    " level INT NOT NULL," +
+                    " xp BIGINT NOT NULL," +
+                    " talent_points INT NOT NULL," +
+                    " talents TEXT NOT NULL," +
+                    " max_mana INT NOT NULL," +
+                    " max_stamina INT NOT NULL," +
+                    " mana DOUBLE NOT NULL," +
+                    " stamina DOUBLE NOT NULL," +
+                    " cooldowns BLOB NULL," +
+                    " row_version BIGINT NOT NULL DEFAULT 0" +
+                    ")"
+                );
+                if (!hasColumn(c, "cooldowns")) st.executeUpdate("ALTER TABLE profiles ADD COLUMN cooldowns BLOB NULL");
+                if (!hasColumn(c, "row_version")) st.executeUpdate("ALTER TABLE profiles ADD COLUMN row_version BIGINT NOT NULL DEFAULT 0");
+                st.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS profile_talents (" +
+                    " uuid CHAR(36) NOT NULL," +
+                    " talent_id VARCHAR(64) NOT NULL," +
+                    " `rank` INT NOT NULL," +
+                    " PRIMARY KEY (uuid, talent_id)" +
+                    ")"
+                );
+                st.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS profile_branches (" +
+                    " uuid CHAR(36) NOT NULL," +
+                    " branch_id VARCHAR(64) NOT NULL," +
+                    " PRIMARY KEY (uuid, branch_id)" +
+                    ")"
+                );
+                migrateTalentsCsv(c);
+            }
+        } catch (Exception e) {
+            close();
+            throw new RuntimeException("Failed to init MySQL storage (" + url + ")", e);
+        }
+    }
+
+    /** Columns added after the first release are created with ALTER TABLE on old databases. */
+    private static boolean hasColumn(Connection c, String column) throws SQLException {
+        try (ResultSet rs = c.getMetaData().getColumns(c.getCatalog(), null, "profiles", column)) {
+            return rs.next();
+        }
+    }
+
+    private void migrateTalentsCsv(Connection c) throws SQLException {
+        c.setAutoCommit(false);
+        try (TalentRows talents = new TalentRows(c, TalentRows.MYSQL)) {
+            int n = talents.migrateCsv(c);
+            c.commit();
+            if (n > 0) log.info("Migrated talents of " + n + " profiles to profile_talents/profile_branches");
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+
+    @Override
+    public PlayerProfile find(UUID uuid, String name) {
+        try (Connection c = pool.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT * FROM profiles WHERE uuid=?")) {
+            ps.setString(1, uuid.toString());
+            PlayerProfile p = null;
+            String csv = null;
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    p = ProfileRows.read(rs, uuid, name);
+                    csv = rs.getString("talents");
+                }
+            }
+            if (p != null) {
+                try (TalentRows talents = new TalentRows(c, TalentRows.MYSQL)) {
+                    talents.read(p, csv);
+                }
+                p.markLoaded();
+            }
+            return p;
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load profile", e);
+        }
+    }
+
+    @Override
+    public void save(PlayerProfile p) {
+        saveAll(List.of(p));
+    }
+
+    /** Skips rows another server has saved since the profile was loaded (see {@link DataStore#saveAll}). */
+    @Override
+    public int saveAll(Collection<PlayerProfile> profiles) {
+        return writeCurrent(profiles, false, "save");
+    }
+
+    /** Journal copies carry the version of the row they were taken from, so an equal row version is written. */
+    @Override
+    public int replayAll(Collection<PlayerProfile> profiles) {
+        return writeCurrent(profiles, true, "replay");
+    }
+
+    /**
+     * Writes the profiles whose row hasn't moved past them. The row version check and the writes share one
+     * transaction, and {@code FOR UPDATE} keeps other servers from saving the same players in between.
+     *
+     * @param sameVersion also write a profile whose row is at its own version
+     */
+    private int writeCurrent(Collection<PlayerProfile> profiles, boolean sameVersion, String what) {
+        if (profiles.isEmpty()) return 0;
+        try (Connection c = pool.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                Map<String, Long> versions = lockRows(c, profiles);
+                List<PlayerProfile> current = new ArrayList<>(profiles.size());
+                for (PlayerProfile p : profiles) {
+                    Long row = versions.get(p.uuid().toString());
+                    if (row == null || row < p.rowVersion() || (sameVersion && row == p.rowVersion())) current.add(p);
+                }
+                write(c, current);
+                c.commit();
+                return current.size();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to " + what + " " + profiles.size() + " profiles", e);
+        }
+    }
+
+    /** Row versions of the profiles' existing rows (uuid -> version), locked until the transaction ends. */
+    private static Map<String, Long> lockRows(Connection c, Collection<PlayerProfile> profiles) throws SQLException {
+        Map<String, Long> versions = new HashMap<>();
+        List<PlayerProfile> all = new ArrayList<>(profiles);
+        for (int from = 0; from < all.size(); from += LOCK_CHUNK) {
+            int n = Math.min(LOCK_CHUNK, all.size() - from);
+            String sql = "SELECT uuid, row_version FROM profiles WHERE uuid IN ("
+                    + String.join(",", Collections.nCopies(n, "?")) + ") FOR UPDATE";
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                for (int i = 0; i < n; i++) ps.setString(i + 1, all.get(from + i).uuid().toString());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) versions.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+        }
+        return versions;
+    }
+
+    private static void write(Connection c, Collection<PlayerProfile> profiles) throws SQLException {
+        if (profiles.isEmpty()) return;
+        try (PreparedStatement ps = c.prepareStatement(UPSERT_SQL);
+             TalentRows talents = new TalentRows(c, TalentRows.MYSQL)) {
+            for (PlayerProfile p : profiles) {
+                ProfileRows.bind(ps, p);
+                ps.addBatch();
+                talents.add(p);
+            }
+            ps.executeBatch();
+            talents.execute();
+        }
+    }
+
+    @Override
+    public boolean shared() {
+        return true;
+    }
+
+    @Override
+    public long rowVersion(UUID uuid) {
+        try (Connection c = pool.getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT row_version FROM profiles WHERE uuid=?")) {
+            ps.setString(1, uuid.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read the row version of " + uuid, e);
+        }
+    }
+
+    /** One connection is left for the writer. */
+    @Override
+    public int maxConcurrency() {
+        return Math.max(1, poolSize - 1);
+    }
+
+    @Override
+    public void close() {
+        try { if (pool != null) pool.close(); } catch (Exception ignored) {}
+    }
+}
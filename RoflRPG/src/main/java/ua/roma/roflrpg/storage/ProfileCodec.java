@@ -0,0 +1,260 @@
+package ua.roma.roflrpg.storage;
+
+import ua.roma.roflrpg.model.PlayerProfile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary form of a {@link PlayerProfile} (the uuid is the key and is not encoded).
+ *
+ * <p>Layout: {@code version(1) flags(1) name race class level xp talentPoints maxMana maxStamina mana stamina
+ * talentCount [talent rank]... branchCount [branch]... cooldowns}. Integers are unsigned varints, strings are
+ * {@code varint length + UTF-8}, mana/stamina are raw IEEE doubles. Talent ids are written as small integers from a
+ * {@link TalentIds} dictionary, or inline as strings when {@link #FLAG_INLINE_TALENTS} is set.
+ *
+ * <p>{@code cooldowns} (since version 2) is {@code base gcdLeft count [skillId left]...}: only running cooldowns,
+ * as milliseconds left at {@code base} (epoch millis of the encode), so the clock keeps running while the player is
+ * offline. The same block is used for the {@code profiles.cooldowns} column ({@link #encodeCooldowns}).
+ *
+ * <p>{@code rowVersion} (since version 3, varint after the cooldowns) is {@link PlayerProfile#rowVersion()}, so journal
+ * records know which database row they are based on.
+ *
+ * <p>Bump {@link #VERSION} on any layout change and keep decoding the old versions.
+ */
+public final class ProfileCodec {
+    public static final int VERSION = 3;
+
+    /** Talent ids are strings instead of dictionary ids (self-contained records). */
+    static final int FLAG_INLINE_TALENTS = 1;
+
+    /**
+     * Talent id dictionary. Ids must never be reassigned once written, so this is backed by storage rather than by
+     * the definition order (which changes whenever talents.yml is edited).
+     */
+    public interface TalentIds {
+        /** Id of an already known talent, or -1. */
+        int idOf(String talentId);
+
+        /** Talent id for a dictionary id, or null if unknown. */
+        String nameOf(int id);
+    }
+
+    private ProfileCodec() {}
+
+    /** @param ids dictionary, or null to write talent ids inline */
+    public static byte[] encode(PlayerProfile p, TalentIds ids) {
+        Out out = new Out(64 + p.talentCount() * 4);
+        out.b(VERSION);
+        out.b(ids == null ? FLAG_INLINE_TALENTS : 0);
+        out.str(p.lastKnownName());
+        out.str(p.raceId());
+        out.str(p.classId());
+        out.varint(p.level());
+        out.varlong(p.xp());
+        out.varint(p.talentPoints());
+        out.varint(p.maxMana());
+        out.varint(p.maxStamina());
+        out.dbl(p.mana());
+        out.dbl(p.stamina());
+
+        out.varint(p.talentCount());
+        for (int i = 0; i < p.talentCount(); i++) {
+            String talentId = p.talentIdAt(i);
+            if (ids == null) {
+                out.str(talentId);
+            } else {
+                int id = ids.idOf(talentId);
+                if (id < 0) throw new IllegalStateException("Talent '" + talentId + "' is not in the dictionary");
+                out.varint(id);
+            }
+            out.varint(p.talentRankAt(i));
+        }
+
+        out.varint(p.unlockedBranches().size());
+        for (String b : p.unlockedBranches()) out.str(b);
+
+        writeCooldowns(out, p, System.currentTimeMillis());
+        out.varlong(p.rowVersion());
+        return out.toByteArray();
+    }
+
+    /** Cooldown block alone, or null if nothing is running. */
+    public static byte[] encodeCooldowns(PlayerProfile p) {
+        long now = System.currentTimeMillis();
+        if (p.gcdUntil() <= now && !hasRunning(p, now)) return null;
+        Out out = new Out(16 + p.cooldownsUntil().size() * 16);
+        writeCooldowns(out, p, now);
+        return out.toByteArray();
+    }
+
+    /** @throws IllegalArgumentException on a malformed block */
+    public static void decodeCooldowns(PlayerProfile p, byte[] data) {
+        if (data == null || data.length == 0) return;
+        try {
+            readCooldowns(new In(data), p);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated cooldowns", e);
+        }
+    }
+
+    private static boolean hasRunning(PlayerProfile p, long now) {
+        for (long until : p.cooldownsUntil().values()) {
+            if (until > now) return true;
+        }
+        return false;
+    }
+
+    private static void writeCooldowns(Out out, PlayerProfile p, long now) {
+        out.varlong(now);
+        out.varlong(Math.max(0, p.gcdUntil() - now));
+        int running = 0;
+        for (long until : p.cooldownsUntil().values()) {
+            if (until > now) running++;
+        }
+        out.varint(running);
+        for (Map.Entry<String, Long> e : p.cooldownsUntil().entrySet()) {
+            if (e.getValue() <= now) continue;
+            out.str(e.getKey());
+            out.varlong(e.getValue() - now);
+        }
+    }
+
+    private static void readCooldowns(In in, PlayerProfile p) {
+        long base = in.varlong();
+        long gcdLeft = in.varlong();
+        if (gcdLeft > 0) p.gcdUntil(base + gcdLeft);
+        for (int i = 0, n = in.varint(); i < n; i++) {
+            String skillId = in.str();
+            p.cooldownUntil(skillId, base + in.varlong());
+        }
+    }
+
+    /**
+     * @param name current player name; overrides the stored one when not null
+     * @throws IllegalArgumentException on an unknown version or a malformed record
+     */
+    public static PlayerProfile decode(UUID uuid, String name, byte[] data, TalentIds ids) {
+        try {
+            In in = new In(data);
+            int version = in.b();
+            if (version < 1 || version > VERSION) throw new IllegalArgumentException("Unsupported profile snapshot version " + version);
+            boolean inline = (in.b() & FLAG_INLINE_TALENTS) != 0;
+
+            PlayerProfile p = new PlayerProfile(uuid, in.str());
+            p.raceId(in.str());
+            p.classId(in.str());
+            p.level(in.varint());
+            p.xp(in.varlong());
+            p.talentPoints(in.varint());
+            p.maxMana(in.varint());
+            p.maxStamina(in.varint());
+            p.mana(in.dbl());
+            p.stamina(in.dbl());
+
+            for (int i = 0, n = in.varint(); i < n; i++) {
+                String talentId;
+                if (inline) {
+                    talentId = in.str();
+                } else {
+                    int id = in.varint();
+                    talentId = ids == null ? null : ids.nameOf(id);
+                    if (talentId == null) throw new IllegalArgumentException("Unknown talent dictionary id " + id);
+                }
+                p.setTalentRank(talentId, in.varint());
+            }
+            for (int i = 0, n = in.varint(); i < n; i++) p.unlockBranch(in.str());
+            if (version >= 2) readCooldowns(in, p);
+            if (version >= 3) p.rowVersion(in.varlong());
+
+            if (name != null) p.lastKnownName(name);
+            return p;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated profile snapshot", e);
+        }
+    }
+
+    private static final class Out {
+        private byte[] buf;
+        private int pos;
+
+        Out(int capacity) { buf = new byte[capacity]; }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+        }
+
+        void b(int v) {
+            ensure(1);
+            buf[pos++] = (byte) v;
+        }
+
+        void varint(int v) { varlong(v & 0xFFFFFFFFL); }
+
+        void varlong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void dbl(double d) {
+            long bits = Double.doubleToLongBits(d);
+            ensure(8);
+            for (int i = 0; i < 8; i++) buf[pos++] = (byte) (bits >>> (i * 8));
+        }
+
+        void str(String s) {
+            byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        byte[] toByteArray() { return Arrays.copyOf(buf, pos); }
+    }
+
+    private static final class In {
+        private final byte[] buf;
+        private int pos;
+
+        In(byte[] buf) { this.buf = buf; }
+
+        int b() { return buf[pos++] & 0xFF; }
+
+        int varint() {
+            long v = varlong();
+            if (v > Integer.MAX_VALUE) throw new IllegalArgumentException("varint out of range: " + v);
+            return (int) v;
+        }
+
+        long varlong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        double dbl() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) bits |= (long) (buf[pos++] & 0xFF) << (i * 8);
+            return Double.longBitsToDouble(bits);
+        }
+
+        String str() {
+            int len = varint();
+            if (len > buf.length - pos) throw new IllegalArgumentException("String length out of range: " + len);
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ua.roma.roflrpg.storage;
+
+import ua.roma.roflrpg.model.PlayerProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only crash journal of profile snapshots ({@code journal.bin} in the data folder).
+ *
+ * <p>Each record is {@code length(4) crc32(4) uuid(16) ProfileCodec record (inline talent ids)}. The file only
+ * exists while there may be changes the database doesn't have: it is deleted after a clean shutdown, so finding it
+ * on startup means the server went down without saving. {@link #replay()} then returns the newest record per
+ * player; a torn record at the end (crash mid-append) is ignored.
+ *
+ * <p>Not thread-safe: use it from a single thread (the profile writer).
+ */
+public final class ProfileJournal implements AutoCloseable {
+    private static final int HEADER = 8;
+
+    private final File file;
+    private final boolean fsync;
+    private FileChannel channel;
+    private volatile long size;
+
+    public ProfileJournal(File file, boolean fsync) {
+        this.file = file;
+        this.fsync = fsync;
+    }
+
+    public boolean exists() {
+        return file.isFile() && file.length() > 0;
+    }
+
+    /** Bytes appended since the journal was (re)created. */
+    public long size() {
+        return size;
+    }
+
+    /** Newest journaled state per player, in file order. Call before the first append. */
+    public Map<UUID, PlayerProfile> replay() throws IOException {
+        Map<UUID, PlayerProfile> out = new LinkedHashMap<>();
+        if (!exists()) return out;
+
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        CRC32 crc = new CRC32();
+        while (buf.remaining() >= HEADER) {
+            int len = buf.getInt();
+            int sum = buf.getInt();
+            if (len < 16 || len > buf.remaining()) break;
+
+            crc.reset();
+            crc.update(buf.array(), buf.position(), len);
+            if ((int) crc.getValue() != sum) break;
+
+            UUID uuid = new UUID(buf.getLong(), buf.getLong());
+            byte[] data = new byte[len - 16];
+            buf.get(data);
+            try {
+                out.put(uuid, ProfileCodec.decode(uuid, null, data, null));
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+        }
+        return out;
+    }
+
+    public void append(Collection<PlayerProfile> snapshots) throws IOException {
+        if (snapshots.isEmpty()) return;
+        if (channel == null) channel = open(file, false);
+        write(channel, snapshots);
+    }
+
+    /**
+     * Replaces the journal with the given snapshots (compaction). The new file is written next to the old one and
+     * moved over it, so a crash in between leaves one of the two complete files.
+     */
+    public void rewrite(Collection<PlayerProfile> snapshots) throws IOException {
+        closeChannel();
+        size = 0;
+        if (snapshots.isEmpty()) {
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (FileChannel ch = open(tmp, true)) {
+            write(ch, snapshots);
+            ch.force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Called once the database is known to have everything. */
+    public void delete() throws IOException {
+        closeChannel();
+        size = 0;
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private void write(FileChannel ch, Collection<PlayerProfile> snapshots) throws IOException {
+        for (PlayerProfile p : snapshots) {
+            byte[] data = ProfileCodec.encode(p, null);
+            ByteBuffer rec = ByteBuffer.allocate(HEADER + 16 + data.length);
+            rec.putInt(16 + data.length);
+            rec.putInt(0);
+            rec.putLong(p.uuid().getMostSignificantBits());
+            rec.putLong(p.uuid().getLeastSignificantBits());
+            rec.put(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(rec.array(), HEADER, 16 + data.length);
+            rec.putInt(4, (int) crc.getValue());
+
+            rec.flip();
+            while (rec.hasRemaining()) ch.write(rec);
+            size += rec.limit();
+        }
+        if (fsync) ch.force(false);
+    }
+
+    private static FileChannel open(File f, boolean truncate) throws IOException {
+        if (!f.getParentFile().exists()) f.getParentFile().mkdirs();
+        return truncate
+                ? FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void closeChannel() {
+        try { if (channel != null) channel.close(); } catch (Exception ignored) {}
+        channel = null;
+    }
+
+    @Override
+    public void close() {
+        closeChannel();
+    }
+}
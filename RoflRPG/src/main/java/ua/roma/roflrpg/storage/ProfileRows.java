@@ -0,0 +1,60 @@
+package ua.roma.roflrpg.storage;
+
+import ua.roma.roflrpg.model.PlayerProfile;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Row mapping for the {@code profiles} table, shared by the SQL backends.
+ * The upsert statements of every backend must use this column order.
+ *
+ * <p>Talents live in {@link TalentRows}. The {@code talents} column still gets the legacy CSV on every save, so an
+ * older plugin version reading the row sees the same talents; {@link TalentRows#read} compares the two on load.
+ */
+final class ProfileRows {
+    static final String COLUMNS = "uuid,name,race,class,level,xp,talent_points,talents,max_mana,max_stamina,mana,stamina,cooldowns,row_version";
+    static final String PLACEHOLDERS = "?,?,?,?,?,?,?,?,?,?,?,?,?,?";
+
+    private ProfileRows() {}
+
+    static PlayerProfile read(ResultSet rs, UUID uuid, String name) throws SQLException {
+        PlayerProfile p = new PlayerProfile(uuid, rs.getString("name"));
+        p.raceId(rs.getString("race"));
+        p.classId(rs.getString("class"));
+        p.level(rs.getInt("level"));
+        p.xp(rs.getLong("xp"));
+        p.talentPoints(rs.getInt("talent_points"));
+        p.maxMana(rs.getInt("max_mana"));
+        p.maxStamina(rs.getInt("max_stamina"));
+        p.mana(rs.getDouble("mana"));
+        p.stamina(rs.getDouble("stamina"));
+        try {
+            ProfileCodec.decodeCooldowns(p, rs.getBytes("cooldowns"));
+        } catch (IllegalArgumentException ignored) {
+            // Cooldowns are not worth failing a login over.
+        }
+        p.rowVersion(rs.getLong("row_version"));
+        if (name != null) p.lastKnownName(name);
+        return p;
+    }
+
+    static void bind(PreparedStatement ps, PlayerProfile p) throws SQLException {
+        ps.setString(1, p.uuid().toString());
+        ps.setString(2, p.lastKnownName());
+        ps.setString(3, p.raceId());
+        ps.setString(4, p.classId());
+        ps.setInt(5, p.level());
+        ps.setLong(6, p.xp());
+        ps.setInt(7, p.talentPoints());
+        ps.setString(8, p.talentsCsv());
+        ps.setInt(9, p.maxMana());
+        ps.setInt(10, p.maxStamina());
+        ps.setDouble(11, p.mana());
+        ps.setDouble(12, p.stamina());
+        ps.setBytes(13, ProfileCodec.encodeCooldowns(p));
+        ps.setLong(14, p.rowVersion());
+    }
+}
@@ -1,27 +1,88 @@
 package ua.roma.roflrpg.storage;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.plugin.java.JavaPlugin;
 import ua.roma.roflrpg.model.PlayerProfile;
 
 import java.io.File;
 import java.sql.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-public final class SQLiteDataStore {
-    private final JavaPlugin plugin;
+/**
+ * SQLite profile storage.
+ *
+ * <p>One connection, tuned via {@code storage.sqlite.*} in config.yml (WAL journaling by default, so commits
+ * are cheap and outside readers don't block the writer). The load/upsert statements are prepared once in {@link #init()}
+ * and reused; all methods are synchronized because the statements share the connection.
+ *
+ * <p>With {@code storage.sqlite.binarySnapshots} (off by default) every save also stores the whole profile as a
+ * {@link ProfileCodec} BLOB in {@code profiles.snapshot}, and a load reads just that column and decodes it. The
+ * trade-off: loads get cheaper, saves get more expensive, because the wide row and the talent tables are still
+ * written (so the option can be switched off, the data moved to MySQL or the jar rolled back at any time) and
+ * every save adds an encode plus one more UPDATE. Worth it when joins/restarts dominate, not under heavy autosave.
+ * A trigger drops the snapshot of any row updated without a new {@code row_version} (i.e. by an older plugin
+ * version), so a stale blob is never loaded. {@code ProfileLoadBenchmark} compares both load paths.
+ */
+public final class SQLiteDataStore implements DataStore {
+    private static final String UPSERT_SQL =
+        "INSERT INTO profiles(" + ProfileRows.COLUMNS + ") " +
+        "VALUES(" + ProfileRows.PLACEHOLDERS + ") " +
+        "ON CONFLICT(uuid) DO UPDATE SET " +
+        " name=excluded.name," +
+        " race=excluded.race," +
+        " class=excluded.class," +
+        " level=excluded.level," +
+        " xp=excluded.xp," +
+        " talent_points=excluded.talent_points," +
+        " talents=excluded.talents," +
+        " max_mana=excluded.max_mana," +
+        " max_stamina=excluded.max_stamina," +
+        " mana=excluded.mana," +
+        " stamina=excluded.stamina," +
+        " cooldowns=excluded.cooldowns," +
+        " row_version=excluded.row_version";
+
+    private final File dataFolder;
+    private final Supplier<ConfigurationSection> config;
+    private final Logger log;
     private Connection conn;
 
+    private PreparedStatement loadStmt;
+    private PreparedStatement upsertStmt;
+    private TalentRows talentRows;
+
+    private boolean binarySnapshots;
+    private PreparedStatement snapshotStmt;
+    private PreparedStatement loadSnapshotStmt;
+    private TalentDictionary talentDict;
+
     public SQLiteDataStore(JavaPlugin plugin) {
-        this.plugin = plugin;
+        this(plugin.getDataFolder(), plugin::getConfig, plugin.getLogger());
     }
 
+    /** @param config the plugin config (read on {@link #init()}) */
+    SQLiteDataStore(File dataFolder, Supplier<ConfigurationSection> config, Logger log) {
+        this.dataFolder = dataFolder;
+        this.config = config;
+        this.log = log;
+    }
+
+    @Override
     public void init() {
         try {
-            File dbFile = new File(plugin.getDataFolder(), "rpg.db");
+            File dbFile = new File(dataFolder, "rpg.db");
             if (!dbFile.getParentFile().exists()) dbFile.getParentFile().mkdirs();
             String url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
             conn = DriverManager.getConnection(url);
 
+            applyPragmas(config.get());
+
             try (Statement st = conn.createStatement()) {
                 st.executeUpdate(
                     "CREATE TABLE IF NOT EXISTS profiles (" +
@@ -36,80 +97,236 @@ public final class SQLiteDataStore {
                     " max_mana INTEGER NOT NULL," +
                     " max_stamina INTEGER NOT NULL," +
                     " mana REAL NOT NULL," +
-                    " stamina REAL NOT NULL" +
+                    " stamina REAL NOT NULL," +
+                    " cooldowns BLOB," +
+                    " row_version INTEGER NOT NULL DEFAULT 0" +
+                    ")"
+                );
+                if (!hasColumn("cooldowns")) st.executeUpdate("ALTER TABLE profiles ADD COLUMN cooldowns BLOB");
+                if (!hasColumn("row_version")) st.executeUpdate("ALTER TABLE profiles ADD COLUMN row_version INTEGER NOT NULL DEFAULT 0");
+                st.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS profile_talents (" +
+                    " uuid TEXT NOT NULL," +
+                    " talent_id TEXT NOT NULL," +
+                    " rank INTEGER NOT NULL," +
+                    " PRIMARY KEY (uuid, talent_id)" +
+                    ")"
+                );
+                st.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS profile_branches (" +
+                    " uuid TEXT NOT NULL," +
+                    " branch_id TEXT NOT NULL," +
+                    " PRIMARY KEY (uuid, branch_id)" +
                     ")"
                 );
             }
+
+            loadStmt = conn.prepareStatement("SELECT * FROM profiles WHERE uuid=?");
+            upsertStmt = conn.prepareStatement(UPSERT_SQL);
+            talentRows = new TalentRows(conn, TalentRows.SQLITE);
+            migrateTalentsCsv();
+            initSnapshots();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to init SQLite", e);
         }
     }
 
-    public PlayerProfile load(UUID uuid, String name) {
-        try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM profiles WHERE uuid=?")) {
-            ps.setString(1, uuid.toString());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) {
-                    PlayerProfile p = new PlayerProfile(uuid, name);
-                    save(p);
-                    return p;
+    /**
+     * Configuration:
+     * <ul>
+     *   <li>storage.sqlite.journalMode (WAL, DELETE, ...)</li>
+     *   <li>storage.sqlite.synchronous (OFF, NORMAL, FULL)</li>
+     *   <li>storage.sqlite.cacheSizeKb (page cache size)</li>
+     *   <li>storage.sqlite.mmapSizeMb (0 disables memory mapping)</li>
+     *   <li>storage.sqlite.busyTimeoutMs</li>
+     * </ul>
+     */
+    private void applyPragmas(ConfigurationSection cfg) throws SQLException {
+        String journal = pragmaWord(cfg.getString("storage.sqlite.journalMode", "WAL"), "WAL");
+        String sync = pragmaWord(cfg.getString("storage.sqlite.synchronous", "NORMAL"), "NORMAL");
+        long cacheKb = Math.max(0, cfg.getLong("storage.sqlite.cacheSizeKb", 8192));
+        long mmapBytes = Math.max(0, cfg.getLong("storage.sqlite.mmapSizeMb", 64)) * 1024L * 1024L;
+        long busyMs = Math.max(0, cfg.getLong("storage.sqlite.busyTimeoutMs", 5000));
+
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("PRAGMA journal_mode=" + journal)) {
+                if (rs.next() && !journal.equalsIgnoreCase(rs.getString(1))) {
+                    log.warning("SQLite refused journal_mode=" + journal + ", using " + rs.getString(1));
                 }
-                PlayerProfile p = new PlayerProfile(uuid, rs.getString("name"));
-                p.raceId(rs.getString("race"));
-                p.classId(rs.getString("class"));
-                p.level(rs.getInt("level"));
-                p.xp(rs.getLong("xp"));
-                p.talentPoints(rs.getInt("talent_points"));
-                p.talentsCsv(rs.getString("talents"));
-                p.maxMana(rs.getInt("max_mana"));
-                p.maxStamina(rs.getInt("max_stamina"));
-                p.mana(rs.getDouble("mana"));
-                p.stamina(rs.getDouble("stamina"));
-                p.lastKnownName(name);
-                return p;
             }
+            st.execute("PRAGMA synchronous=" + sync);
+            // Negative value = size in KiB instead of pages.
+            st.execute("PRAGMA cache_size=-" + cacheKb);
+            st.execute("PRAGMA mmap_size=" + mmapBytes);
+            st.execute("PRAGMA busy_timeout=" + busyMs);
+        }
+    }
+
+    private void migrateTalentsCsv() throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            int n = talentRows.migrateCsv(conn);
+            conn.commit();
+            if (n > 0) log.info("Migrated talents of " + n + " profiles to profile_talents/profile_branches");
+        } catch (SQLException e) {
+            talentRows.clearBatch();
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Configuration: storage.sqlite.binarySnapshots
+     */
+    private void initSnapshots() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            if (!hasColumn("snapshot")) st.executeUpdate("ALTER TABLE profiles ADD COLUMN snapshot BLOB");
+
+            // Our saves bump row_version in the upsert, then set the snapshot; anything else that updates a row
+            // (an older plugin version, a manual fix) leaves both alone, so its snapshot no longer matches the row.
+            st.executeUpdate(
+                "CREATE TRIGGER IF NOT EXISTS profiles_snapshot_stale AFTER UPDATE ON profiles" +
+                " WHEN NEW.snapshot IS NOT NULL AND NEW.snapshot IS OLD.snapshot AND NEW.row_version = OLD.row_version" +
+                " BEGIN UPDATE profiles SET snapshot=NULL WHERE uuid=NEW.uuid; END"
+            );
+
+            binarySnapshots = config.get().getBoolean("storage.sqlite.binarySnapshots", false);
+            if (!binarySnapshots) {
+                // Rows saved from now on won't refresh the blob; drop it so a later re-enable can't load stale data.
+                st.executeUpdate("UPDATE profiles SET snapshot=NULL WHERE snapshot IS NOT NULL");
+                return;
+            }
+        }
+        talentDict = new TalentDictionary(conn);
+        snapshotStmt = conn.prepareStatement("UPDATE profiles SET snapshot=? WHERE uuid=?");
+        loadSnapshotStmt = conn.prepareStatement("SELECT snapshot, row_version FROM profiles WHERE uuid=?");
+    }
+
+    /** Columns added after the first release are created with ALTER TABLE on old databases. */
+    private boolean hasColumn(String column) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA table_info(profiles)")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+        }
+        return false;
+    }
+
+    /** PRAGMA values can't be bound as parameters; only let plain words through. */
+    private static String pragmaWord(String v, String def) {
+        if (v == null || !v.matches("[A-Za-z]+")) return def;
+        return v.toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public synchronized PlayerProfile load(UUID uuid, String name) {
+        return DataStore.super.load(uuid, name);
+    }
+
+    @Override
+    public synchronized PlayerProfile find(UUID uuid, String name) {
+        try {
+            PlayerProfile p = binarySnapshots ? findSnapshot(uuid, name) : null;
+            if (p == null) {
+                loadStmt.setString(1, uuid.toString());
+                try (ResultSet rs = loadStmt.executeQuery()) {
+                    if (!rs.next()) return null;
+                    p = ProfileRows.read(rs, uuid, name);
+                    String csv = rs.getString("talents");
+                    rs.close();
+                    talentRows.read(p, csv);
+                }
+            }
+            p.markLoaded();
+            return p;
         } catch (SQLException e) {
             throw new RuntimeException("Failed to load profile", e);
         }
     }
 
-    public void save(PlayerProfile p) {
-        String sql =
-            "INSERT INTO profiles(uuid,name,race,class,level,xp,talent_points,talents,max_mana,max_stamina,mana,stamina) " +
-            "VALUES(?,?,?,?,?,?,?,?,?,?,?,?) " +
-            "ON CONFLICT(uuid) DO UPDATE SET " +
-            " name=excluded.name," +
-            " race=excluded.race," +
-            " class=excluded.class," +
-            " level=excluded.level," +
-            " xp=excluded.xp," +
-            " talent_points=excluded.talent_points," +
-            " talents=excluded.talents," +
-            " max_mana=excluded.max_mana," +
-            " max_stamina=excluded.max_stamina," +
-            " mana=excluded.mana," +
-            " stamina=excluded.stamina";
-
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, p.uuid().toString());
-            ps.setString(2, p.lastKnownName());
-            ps.setString(3, p.raceId());
-            ps.setString(4, p.classId());
-            ps.setInt(5, p.level());
-            ps.setLong(6, p.xp());
-            ps.setInt(7, p.talentPoints());
-            ps.setString(8, p.talentsCsv());
-            ps.setInt(9, p.maxMana());
-            ps.setInt(10, p.maxStamina());
-            ps.setDouble(11, p.mana());
-            ps.setDouble(12, p.stamina());
-            ps.executeUpdate();
+    /**
+     * Reads only the snapshot column. Null if there is no row or no usable snapshot; the caller then falls back to
+     * the row + talent tables (once per player: the next save writes the snapshot).
+     */
+    private PlayerProfile findSnapshot(UUID uuid, String name) throws SQLException {
+        loadSnapshotStmt.setString(1, uuid.toString());
+        try (ResultSet rs = loadSnapshotStmt.executeQuery()) {
+            if (!rs.next()) return null;
+            byte[] data = rs.getBytes(1);
+            if (data == null || data.length == 0) return null;
+            try {
+                PlayerProfile p = ProfileCodec.decode(uuid, name, data, talentDict);
+                p.rowVersion(rs.getLong(2));
+                return p;
+            } catch (IllegalArgumentException e) {
+                log.log(Level.WARNING, "Ignoring unreadable snapshot of " + uuid + ", loading from rows", e);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void save(PlayerProfile p) {
+        saveAll(List.of(p));
+    }
+
+    /**
+     * Writes all profiles (row + changed talent rows) with reused prepared statements inside a single
+     * transaction (one fsync instead of N).
+     *
+     * @return number of rows written
+     */
+    @Override
+    public synchronized int saveAll(Collection<PlayerProfile> profiles) {
+        if (profiles.isEmpty()) return 0;
+        try {
+            if (binarySnapshots) {
+                for (PlayerProfile p : profiles) {
+                    for (int i = 0; i < p.talentCount(); i++) talentDict.intern(p.talentIdAt(i));
+                }
+            }
+            conn.setAutoCommit(false);
+            try {
+                for (PlayerProfile p : profiles) {
+                    ProfileRows.bind(upsertStmt, p);
+                    upsertStmt.addBatch();
+                    talentRows.add(p);
+                    if (binarySnapshots) {
+                        snapshotStmt.setBytes(1, ProfileCodec.encode(p, talentDict));
+                        snapshotStmt.setString(2, p.uuid().toString());
+                        snapshotStmt.addBatch();
+                    }
+                }
+                upsertStmt.executeBatch();
+                talentRows.execute();
+                if (binarySnapshots) snapshotStmt.executeBatch();
+                conn.commit();
+                return profiles.size();
+            } catch (SQLException e) {
+                upsertStmt.clearBatch();
+                talentRows.clearBatch();
+                if (snapshotStmt != null) snapshotStmt.clearBatch();
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Failed to save profile", e);
+            throw new RuntimeException("Failed to save " + profiles.size() + " profiles", e);
         }
     }
 
-    public void close() {
+    @Override
+    public synchronized void close() {
+        try { if (loadStmt != null) loadStmt.close(); } catch (Exception ignored) {}
+        try { if (upsertStmt != null) upsertStmt.close(); } catch (Exception ignored) {}
+        if (talentRows != null) talentRows.close();
+        try { if (snapshotStmt != null) snapshotStmt.close(); } catch (Exception ignored) {}
+        try { if (loadSnapshotStmt != null) loadSnapshotStmt.close(); } catch (Exception ignored) {}
+        if (talentDict != null) talentDict.close();
         try { if (conn != null) conn.close(); } catch (Exception ignored) {}
     }
 }
@@ -0,0 +1,79 @@
+package ua.roma.roflrpg.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only {@code talent_dict(id, talent_id)} table used by {@link ProfileCodec}. Loaded fully at startup;
+ * ids are assigned densely and never reused, so old snapshots stay readable after talents.yml changes.
+ *
+ * <p>Not thread-safe; the owning store synchronizes.
+ */
+final class TalentDictionary implements ProfileCodec.TalentIds, AutoCloseable {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final PreparedStatement insert;
+
+    TalentDictionary(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS talent_dict (" +
+                " id INTEGER PRIMARY KEY," +
+                " talent_id TEXT NOT NULL UNIQUE" +
+                ")"
+            );
+            try (ResultSet rs = st.executeQuery("SELECT id, talent_id FROM talent_dict ORDER BY id")) {
+                while (rs.next()) put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        insert = c.prepareStatement("INSERT INTO talent_dict(id, talent_id) VALUES(?,?)");
+    }
+
+    private void put(int id, String name) {
+        while (names.size() <= id) names.add(null);
+        names.set(id, name);
+        ids.put(name, id);
+    }
+
+    /**
+     * Adds unknown talent ids. Must run outside of a transaction that might roll back, otherwise the in-memory
+     * dictionary would get ahead of the table.
+     */
+    void internAll(Collection<String> talentIds) throws SQLException {
+        for (String t : talentIds) intern(t);
+    }
+
+    /** Single-id {@link #internAll}. */
+    void intern(String talentId) throws SQLException {
+        if (ids.containsKey(talentId)) return;
+        int id = names.size();
+        insert.setInt(1, id);
+        insert.setString(2, talentId);
+        insert.executeUpdate();
+        put(id, talentId);
+    }
+
+    @Override
+    public int idOf(String talentId) {
+        Integer id = ids.get(talentId);
+        return id == null ? -1 : id;
+    }
+
+    @Override
+    public String nameOf(int id) {
+        return id >= 0 && id < names.size() ? names.get(id) : null;
+    }
+
+    @Override
+    public void close() {
+        try { insert.close(); } catch (Exception ignored) {}
+    }
+}
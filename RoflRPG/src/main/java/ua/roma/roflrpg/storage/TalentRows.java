@@ -0,0 +1,194 @@
+package ua.roma.roflrpg.storage;
+
+import ua.roma.roflrpg.model.PlayerProfile;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Normalized talent storage: {@code profile_talents(uuid, talent_id, rank)} and
+ * {@code profile_branches(uuid, branch_id)}.
+ *
+ * <p>Only rows listed in {@link PlayerProfile#changedTalents()}/{@link PlayerProfile#changedBranches()} are
+ * written, unless the profile asked for a full rewrite. Statements are batched; call {@link #execute()} inside
+ * the same transaction as the profile row upsert.
+ *
+ * <p>Statements are prepared on first use, so a load only prepares the two selects and a save only what it
+ * batches. On pooled MySQL connections those prepares are hits in the driver's statement cache
+ * ({@code cachePrepStmts}, see {@link MySqlDataStore}).
+ */
+final class TalentRows implements AutoCloseable {
+
+    /** Dialect-specific SQL. MySQL 8 reserves {@code rank}, hence the quoting. */
+    record Sql(String selectTalents, String upsertTalent, String insertBranch) {}
+
+    static final Sql SQLITE = new Sql(
+            "SELECT talent_id, rank FROM profile_talents WHERE uuid=?",
+            "INSERT INTO profile_talents(uuid,talent_id,rank) VALUES(?,?,?) " +
+            "ON CONFLICT(uuid,talent_id) DO UPDATE SET rank=excluded.rank",
+            "INSERT OR IGNORE INTO profile_branches(uuid,branch_id) VALUES(?,?)"
+    );
+
+    static final Sql MYSQL = new Sql(
+            "SELECT talent_id, `rank` FROM profile_talents WHERE uuid=?",
+            "INSERT INTO profile_talents(uuid,talent_id,`rank`) VALUES(?,?,?) " +
+            "ON DUPLICATE KEY UPDATE `rank`=VALUES(`rank`)",
+            "INSERT IGNORE INTO profile_branches(uuid,branch_id) VALUES(?,?)"
+    );
+
+    // Batched statements come first, in the order execute() must run them (full deletes before inserts).
+    private static final int DELETE_ALL_TALENTS = 0;
+    private static final int DELETE_ALL_BRANCHES = 1;
+    private static final int DELETE_TALENT = 2;
+    private static final int UPSERT_TALENT = 3;
+    private static final int INSERT_BRANCH = 4;
+    private static final int BATCHED = 5;
+    private static final int SELECT_TALENTS = 5;
+    private static final int SELECT_BRANCHES = 6;
+
+    private final Connection c;
+    private final String[] sql;
+    private final PreparedStatement[] statements = new PreparedStatement[7];
+
+    TalentRows(Connection c, Sql sql) {
+        this.c = c;
+        this.sql = new String[]{
+                "DELETE FROM profile_talents WHERE uuid=?",
+                "DELETE FROM profile_branches WHERE uuid=?",
+                "DELETE FROM profile_talents WHERE uuid=? AND talent_id=?",
+                sql.upsertTalent(),
+                sql.insertBranch(),
+                sql.selectTalents(),
+                "SELECT branch_id FROM profile_branches WHERE uuid=?"
+        };
+    }
+
+    private PreparedStatement ps(int which) throws SQLException {
+        PreparedStatement ps = statements[which];
+        if (ps == null) statements[which] = ps = c.prepareStatement(sql[which]);
+        return ps;
+    }
+
+    /**
+     * Reads the talent/branch rows into the profile.
+     *
+     * @param csv the row's {@code talents} column. Every save writes it in the same transaction as the rows, so if
+     *            the two disagree the row was last written by a plugin version without these tables (before the
+     *            migration, or after a downgrade): the CSV wins and the next save rewrites the rows.
+     */
+    void read(PlayerProfile p, String csv) throws SQLException {
+        String id = p.uuid().toString();
+        PreparedStatement selectTalents = ps(SELECT_TALENTS);
+        selectTalents.setString(1, id);
+        try (ResultSet rs = selectTalents.executeQuery()) {
+            while (rs.next()) p.setTalentRank(rs.getString(1), rs.getInt(2));
+        }
+        PreparedStatement selectBranches = ps(SELECT_BRANCHES);
+        selectBranches.setString(1, id);
+        try (ResultSet rs = selectBranches.executeQuery()) {
+            while (rs.next()) p.unlockBranch(rs.getString(1));
+        }
+
+        String stored = csv == null ? "" : csv.trim();
+        if (!stored.equals(p.talentsCsv())) {
+            p.talentsCsv(stored);
+            p.requestTalentRewrite();
+        }
+    }
+
+    /** Queues the profile's pending talent/branch changes. */
+    void add(PlayerProfile p) throws SQLException {
+        String id = p.uuid().toString();
+
+        if (p.talentRewriteRequested()) {
+            PreparedStatement deleteAllTalents = ps(DELETE_ALL_TALENTS);
+            deleteAllTalents.setString(1, id);
+            deleteAllTalents.addBatch();
+            PreparedStatement deleteAllBranches = ps(DELETE_ALL_BRANCHES);
+            deleteAllBranches.setString(1, id);
+            deleteAllBranches.addBatch();
+            for (int i = 0; i < p.talentCount(); i++) addUpsert(id, p.talentIdAt(i), p.talentRankAt(i));
+            for (String b : p.unlockedBranches()) addBranch(id, b);
+            return;
+        }
+
+        for (String tid : p.changedTalents()) {
+            int rank = p.talentRank(tid);
+            if (rank > 0) {
+                addUpsert(id, tid, rank);
+            } else {
+                PreparedStatement deleteTalent = ps(DELETE_TALENT);
+                deleteTalent.setString(1, id);
+                deleteTalent.setString(2, tid);
+                deleteTalent.addBatch();
+            }
+        }
+        for (String b : p.changedBranches()) {
+            if (p.hasBranch(b)) addBranch(id, b);
+        }
+    }
+
+    private void addUpsert(String uuid, String talentId, int rank) throws SQLException {
+        PreparedStatement upsertTalent = ps(UPSERT_TALENT);
+        upsertTalent.setString(1, uuid);
+        upsertTalent.setString(2, talentId);
+        upsertTalent.setInt(3, rank);
+        upsertTalent.addBatch();
+    }
+
+    private void addBranch(String uuid, String branchId) throws SQLException {
+        PreparedStatement insertBranch = ps(INSERT_BRANCH);
+        insertBranch.setString(1, uuid);
+        insertBranch.setString(2, branchId);
+        insertBranch.addBatch();
+    }
+
+    /** Full deletes run first so a rewrite can't wipe rows inserted by the same batch. */
+    void execute() throws SQLException {
+        for (int i = 0; i < BATCHED; i++) {
+            if (statements[i] != null) statements[i].executeBatch();
+        }
+    }
+
+    void clearBatch() throws SQLException {
+        for (int i = 0; i < BATCHED; i++) {
+            if (statements[i] != null) statements[i].clearBatch();
+        }
+    }
+
+    /**
+     * One-time migration from the legacy {@code profiles.talents} CSV column: profiles with talents in the CSV but
+     * no talent/branch rows get their rows written. The CSV itself is left alone (saves keep it current), so an
+     * older plugin version can still read every profile. Idempotent. Run inside a transaction.
+     *
+     * @return number of migrated profiles
+     */
+    int migrateCsv(Connection c) throws SQLException {
+        int migrated = 0;
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT uuid, talents FROM profiles p WHERE talents <> ''"
+                     + " AND NOT EXISTS (SELECT 1 FROM profile_talents t WHERE t.uuid=p.uuid)"
+                     + " AND NOT EXISTS (SELECT 1 FROM profile_branches b WHERE b.uuid=p.uuid)")) {
+            while (rs.next()) {
+                PlayerProfile tmp = new PlayerProfile(UUID.fromString(rs.getString(1)), "");
+                tmp.talentsCsv(rs.getString(2));
+                tmp.requestTalentRewrite();
+                add(tmp);
+                migrated++;
+            }
+            execute();
+        }
+        return migrated;
+    }
+
+    @Override
+    public void close() {
+        for (PreparedStatement ps : statements) {
+            try { if (ps != null) ps.close(); } catch (Exception ignored) {}
+        }
+    }
+}
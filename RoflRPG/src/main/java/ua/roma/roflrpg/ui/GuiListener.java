@@ -77,7 +77,7 @@ public final class GuiListener implements Listener {
                 if (id == null) { gui.openTalents(p); return; }
                 TalentDef t = defs.talent(id);
                 if (t == null) return;
-                int rank = prof.talentRank(id);
+                int rank = prof.talentRank(t.index());
                 int maxRank = t.maxRank() == null ? 1 : Math.max(1, t.maxRank());
                 if (rank >= maxRank) return;
 
@@ -90,7 +90,7 @@ public final class GuiListener implements Listener {
                 prof.setTalentRank(id, rank + 1);
                 prof.talentPoints(prof.talentPoints() - cost);
                 profiles.save(p);
-                stats.applyAll(p);
+                stats.talentRankChanged(p, t.index(), rank);
                 Msg.send(p, plugin.uiPrefix(), rank == 0 ? "<green>Talent unlocked.</green>" : "<green>Talent upgraded.</green>");
                 gui.openTalents(p);
             }
@@ -142,7 +142,7 @@ public final class GuiManager {
             lore.add("");
             lore.add("<gray>ID: " + t.id() + "</gray>");
 
-            int rank = prof.talentRank(t.id());
+            int rank = prof.talentRank(t.index());
             int maxRank = (t.maxRank() == null ? 1 : Math.max(1, t.maxRank()));
             int cost = (t.pointsPerRank() == null ? 1 : Math.max(1, t.pointsPerRank()));
 
@@ -181,14 +181,10 @@ public final class GuiManager {
         }
 
         // Top row 0..8: HOTBAR skills (Trigger.Z)
-        List<SkillDef> hotbar = new ArrayList<>();
-        for (String sid : clazz.skillIds()) {
-            SkillDef s = defs.skill(sid);
-            if (s != null && s.trigger() == SkillDef.Trigger.Z) hotbar.add(s);
-        }
+        SkillDef[] hotbar = clazz.skillsFor(SkillDef.Trigger.Z);
 
         for (int i = 0; i < 9; i++) {
-            if (i >= hotbar.size()) {
+            if (i >= hotbar.length) {
                 inv.setItem(i, ItemUtil.icon(Material.GRAY_STAINED_GLASS_PANE,
                         "<gray>" + (i + 1) + "</gray>",
                         List.of("<dark_gray>-</dark_gray>", "<gray>" + lang.tr(p, "gui.skills.emptySlot") + "</gray>")
@@ -196,7 +192,7 @@ public final class GuiManager {
                 continue;
             }
 
-            SkillDef s = hotbar.get(i);
+            SkillDef s = hotbar[i];
             inv.setItem(i, skillIcon(p, s, i + 1));
         }
 
@@ -222,7 +218,7 @@ public final class GuiManager {
     }
 
     private ItemStack skillIcon(Player p, SkillDef s, int slotNumberOrMinus1) {
-        long leftMs = skills.cooldownLeftMs(p, s.id());
+        long leftMs = skills.cooldownLeftMs(p, s);
         long leftSec = leftMs <= 0 ? 0 : Math.max(1, (leftMs + 999) / 1000);
 
         List<String> lore = new ArrayList<>();
@@ -8,39 +8,57 @@ import org.bukkit.entity.Player;
 import ua.roma.roflrpg.RoflRPGPlugin;
 import ua.roma.roflrpg.defs.DefinitionRegistry;
 import ua.roma.roflrpg.model.PlayerProfile;
+import ua.roma.roflrpg.services.LangService;
 import ua.roma.roflrpg.services.ProfileService;
 import ua.roma.roflrpg.services.ResourceService;
+import ua.roma.roflrpg.services.SkillService;
 import ua.roma.roflrpg.services.StatsService;
+import ua.roma.roflrpg.util.ComponentCache;
 import ua.roma.roflrpg.util.Msg;
 
+import java.util.Locale;
+import java.util.UUID;
+
 public final class AdminCommand implements CommandExecutor {
     private final RoflRPGPlugin plugin;
     private final DefinitionRegistry defs;
     private final ProfileService profiles;
     private final StatsService stats;
     private final ResourceService resources;
+    private final SkillService skills;
+    private final LangService lang;
 
-    public AdminCommand(RoflRPGPlugin plugin, DefinitionRegistry defs, ProfileService profiles, StatsService stats, ResourceService resources) {
+    public AdminCommand(RoflRPGPlugin plugin, DefinitionRegistry defs, ProfileService profiles, StatsService stats, ResourceService resources, SkillService skills, LangService lang) {
         this.plugin = plugin;
         this.defs = defs;
         this.profiles = profiles;
         this.stats = stats;
         this.resources = resources;
+        this.skills = skills;
+        this.lang = lang;
     }
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (args.length == 0) {
-            Msg.send(sender, plugin.uiPrefix(), "<gray>Usage:</gray> /rpgadmin reload | givexp <p> <amt> | setlevel <p> <lvl> | respec <p>");
+            Msg.send(sender, plugin.uiPrefix(), "<gray>Usage:</gray> /rpgadmin reload | givexp <p> <amt> | setlevel <p> <lvl> | respec <p> | cache | inspect <uuid>");
             return true;
         }
 
         switch (args[0].toLowerCase()) {
             case "reload" -> {
                 plugin.reloadConfig();
-                defs.loadAll();
-                resources.start();
-                Msg.send(sender, plugin.uiPrefix(), "<green>Reloaded.</green>");
+                skills.start();
+                lang.load();
+                // Definitions are parsed off the main thread; lookups keep using the old ones until the swap.
+                defs.reloadAsync().thenAccept(ok -> {
+                    ComponentCache.configure(plugin.getConfig().getInt("ui.componentCache.maxEntries", 4096));
+                    plugin.prewarmComponents();
+                    resources.start();
+                    Msg.send(sender, plugin.uiPrefix(), ok
+                            ? "<green>Reloaded.</green>"
+                            : "<red>Definitions failed to load, kept the old ones (see console).</red>");
+                });
             }
             case "givexp" -> {
                 if (args.length < 3) return true;
@@ -75,6 +93,41 @@ public final class AdminCommand implements CommandExecutor {
                 stats.applyAll(p);
                 Msg.send(sender, plugin.uiPrefix(), "<green>Talents reset.</green>");
             }
+            case "cache" -> {
+                ProfileService.CacheStats s = profiles.cacheStats();
+                long total = s.hits() + s.misses();
+                String hitRate = total == 0 ? "-" : String.format(Locale.ROOT, "%.1f%%", s.hits() * 100.0 / total);
+                Msg.sendUncached(sender, plugin.uiPrefix(), "<gray>Profiles cached:</gray> <white>" + s.cached() + "</white>"
+                        + " <gray>(offline " + s.offline() + ")</gray>"
+                        + " <gray>hits/misses:</gray> <white>" + s.hits() + "/" + s.misses() + "</white> <gray>(" + hitRate + ")</gray>"
+                        + " <gray>evicted:</gray> <white>" + s.evictions() + "</white>");
+                ComponentCache.Stats c = ComponentCache.stats();
+                long parses = c.hits() + c.misses();
+                String parseHitRate = parses == 0 ? "-" : String.format(Locale.ROOT, "%.1f%%", c.hits() * 100.0 / parses);
+                Msg.sendUncached(sender, plugin.uiPrefix(), "<gray>Components cached:</gray> <white>" + c.size() + "/" + c.maxEntries() + "</white>"
+                        + " <gray>hits/misses:</gray> <white>" + c.hits() + "/" + c.misses() + "</white> <gray>(" + parseHitRate + ")</gray>"
+                        + " <gray>rotations:</gray> <white>" + c.rotations() + "</white>");
+            }
+            case "inspect" -> {
+                if (args.length < 2) return true;
+                UUID uuid;
+                try {
+                    uuid = UUID.fromString(args[1]);
+                } catch (IllegalArgumentException ex) {
+                    Msg.send(sender, plugin.uiPrefix(), "<red>Not a UUID.</red>");
+                    return true;
+                }
+                profiles.loadOffline(uuid).whenComplete((prof, ex) -> Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (ex != null || prof == null) {
+                        Msg.send(sender, plugin.uiPrefix(), ex != null ? "<red>Failed to load profile.</red>" : "<red>No such profile.</red>");
+                        return;
+                    }
+                    Msg.sendUncached(sender, plugin.uiPrefix(), "<white>" + prof.lastKnownName() + "</white>"
+                            + " <gray>lvl</gray> " + prof.level() + " <gray>xp</gray> " + prof.xp()
+                            + " <gray>" + prof.raceId() + "/" + prof.classId() + "</gray>"
+                            + " <gray>talents:</gray> " + prof.talentCount());
+                }));
+            }
         }
         return true;
     }
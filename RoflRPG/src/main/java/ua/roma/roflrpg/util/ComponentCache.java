@@ -0,0 +1,97 @@
+package ua.roma.roflrpg.util;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parsed MiniMessage components keyed by source string. Components are immutable, so one instance can be shared by
+ * every caller and thread.
+ *
+ * <p>Bounded by two generations of at most half of {@link #maxEntries()} each. New entries go into the young
+ * generation; once it is full it becomes the old one and the previous old generation is dropped. A hit in the old
+ * generation moves the entry back into the young one, so strings in steady use (prefixes, item names, lore) survive
+ * every rotation, while one-off strings age out after two. Text that changes on every call (the HUD line, messages
+ * with numbers in them) should use {@link #parseUncached(String)} and stay out of the cache altogether.
+ */
+public final class ComponentCache {
+    private static final MiniMessage MM = MiniMessage.miniMessage();
+
+    private static volatile Map<String, Component> young = new ConcurrentHashMap<>();
+    private static volatile Map<String, Component> old = new ConcurrentHashMap<>();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder ROTATIONS = new LongAdder();
+    private static volatile int maxEntries = 4096;
+
+    public record Stats(int size, int maxEntries, long hits, long misses, long rotations) {}
+
+    private ComponentCache() {}
+
+    public static Component get(String mm) {
+        String s = mm == null ? "" : mm;
+        Component c = young.get(s);
+        if (c != null) {
+            HITS.increment();
+            return c;
+        }
+        c = old.get(s);
+        if (c != null) {
+            HITS.increment();
+            put(s, c);
+            return c;
+        }
+        MISSES.increment();
+        c = MM.deserialize(s);
+        put(s, c);
+        return c;
+    }
+
+    public static Component parseUncached(String mm) {
+        return MM.deserialize(mm == null ? "" : mm);
+    }
+
+    /** Parses the strings ahead of time (e.g. off the main thread at startup). Doesn't count as misses. */
+    public static void prewarm(Iterable<String> sources) {
+        for (String s : sources) {
+            if (s == null || young.containsKey(s)) continue;
+            Component c = old.get(s);
+            put(s, c != null ? c : MM.deserialize(s));
+        }
+    }
+
+    private static void put(String s, Component c) {
+        Map<String, Component> y = young;
+        if (y.size() >= maxEntries / 2) rotate(y);
+        young.put(s, c);
+    }
+
+    private static synchronized void rotate(Map<String, Component> full) {
+        if (young != full) return; // another thread rotated first
+        old = full;
+        young = new ConcurrentHashMap<>();
+        ROTATIONS.increment();
+    }
+
+    /** Configuration: ui.componentCache.maxEntries */
+    public static void configure(int max) {
+        maxEntries = Math.max(16, max);
+        if (young.size() + old.size() > maxEntries) clear();
+    }
+
+    public static int maxEntries() {
+        return maxEntries;
+    }
+
+    public static synchronized void clear() {
+        young = new ConcurrentHashMap<>();
+        old = new ConcurrentHashMap<>();
+    }
+
+    public static Stats stats() {
+        return new Stats(young.size() + old.size(), maxEntries, HITS.sum(), MISSES.sum(), ROTATIONS.sum());
+    }
+}
@@ -0,0 +1,48 @@
+package ua.roma.roflrpg.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Definition id -> dense index, for one kind of definition.
+ *
+ * <p>Append-only and never cleared: an id keeps its index across reloads (also if it disappears and comes back), so
+ * per-index arrays held elsewhere (cooldowns, talent ranks) stay valid. Interning is synchronized; lookups may
+ * happen on any thread.
+ */
+public final class IdInterner {
+    private final Map<String, Integer> indices = new ConcurrentHashMap<>();
+    private volatile String[] ids = new String[16];
+    private volatile int size;
+
+    public synchronized int intern(String id) {
+        Integer known = indices.get(id);
+        if (known != null) return known;
+
+        int i = size;
+        if (i == ids.length) ids = Arrays.copyOf(ids, i * 2);
+        ids[i] = id;
+        indices.put(id, i);
+        size = i + 1;
+        return i;
+    }
+
+    /** Index of an interned id, or -1. */
+    public int indexOf(String id) {
+        Integer i = id == null ? null : indices.get(id);
+        return i == null ? -1 : i;
+    }
+
+    /** Id for an index, or null if out of range. */
+    public String idOf(int index) {
+        int n = size;
+        String[] a = ids;
+        return index >= 0 && index < n ? a[index] : null;
+    }
+
+    /** Upper bound (exclusive) of the indices handed out so far. */
+    public int size() {
+        return size;
+    }
+}
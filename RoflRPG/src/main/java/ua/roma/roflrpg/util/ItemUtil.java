@@ -1,7 +1,6 @@
 package ua.roma.roflrpg.util;
 
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
 import org.bukkit.inventory.ItemFlag;
@@ -13,17 +12,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 public final class ItemUtil {
-    private static final MiniMessage MM = MiniMessage.miniMessage();
-
     private ItemUtil() {}
 
     public static ItemStack icon(Material mat, String nameMm, List<String> loreMm) {
         ItemStack it = new ItemStack(mat);
         ItemMeta meta = it.getItemMeta();
-        meta.displayName(MM.deserialize(nameMm));
+        meta.displayName(ComponentCache.get(nameMm));
         if (loreMm != null && !loreMm.isEmpty()) {
             List<Component> lore = new ArrayList<>();
-            for (String s : loreMm) lore.add(MM.deserialize(s));
+            for (String s : loreMm) lore.add(ComponentCache.get(s));
             meta.lore(lore);
         }
         meta.addItemFlags(ItemFlag.HIDE_ATTRIBUTES, ItemFlag.HIDE_ADDITIONAL_TOOLTIP);
@@ -1,25 +1,31 @@
 package ua.roma.roflrpg.util;
 
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import java.util.Map;
 
 public final class Msg {
-    private static final MiniMessage MM = MiniMessage.miniMessage();
-
     private Msg() {}
 
+    /** Parses through {@link ComponentCache}; meant for constant or template text that repeats. */
     public static Component mm(String s) {
-        return MM.deserialize(s == null ? "" : s);
+        return ComponentCache.get(s);
     }
 
     public static void send(CommandSender to, String prefix, String messageMm) {
         to.sendMessage(mm(prefix + messageMm));
     }
 
+    /**
+     * Like {@link #send(CommandSender, String, String)} for text built per call (numbers, names, {@link #fmt}
+     * output), which would only push reusable entries out of the cache.
+     */
+    public static void sendUncached(CommandSender to, String prefix, String messageMm) {
+        to.sendMessage(ComponentCache.parseUncached(prefix + messageMm));
+    }
+
     public static void send(Player to, String messageMm) {
         to.sendMessage(mm(messageMm));
     }
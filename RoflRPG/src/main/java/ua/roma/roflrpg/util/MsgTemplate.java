@@ -0,0 +1,84 @@
+package ua.roma.roflrpg.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-parsed {@code {var}} template for text rendered very often (HUD).
+ *
+ * <p>Same placeholder syntax as {@link Msg#fmt}, but the template is split once into literal segments and variable
+ * slots, and rendering appends straight into a caller-owned {@link StringBuilder}. Placeholders that are not in the
+ * variable list stay as literal text, like with {@code Msg.fmt}.
+ */
+public final class MsgTemplate {
+
+    /** Appends the value of variable {@code slot} (index into the variable list given to {@link #compile}). */
+    public interface Values {
+        void append(StringBuilder out, int slot);
+    }
+
+    private final String source;
+    /** Literal text, or null where {@link #slots} holds a variable slot. */
+    private final String[] literals;
+    private final int[] slots;
+
+    private MsgTemplate(String source, String[] literals, int[] slots) {
+        this.source = source;
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    public static MsgTemplate compile(String source, List<String> vars) {
+        String src = source == null ? "" : source;
+        List<String> lits = new ArrayList<>();
+        List<Integer> slotList = new ArrayList<>();
+        StringBuilder lit = new StringBuilder();
+
+        int i = 0;
+        while (i < src.length()) {
+            int open = src.indexOf('{', i);
+            int close = open < 0 ? -1 : src.indexOf('}', open + 1);
+            if (close < 0) {
+                lit.append(src, i, src.length());
+                break;
+            }
+            int slot = vars.indexOf(src.substring(open + 1, close));
+            if (slot < 0) {
+                // Unknown placeholder: keep the text, continue after the brace.
+                lit.append(src, i, open + 1);
+                i = open + 1;
+                continue;
+            }
+            lit.append(src, i, open);
+            if (!lit.isEmpty()) {
+                lits.add(lit.toString());
+                slotList.add(-1);
+                lit.setLength(0);
+            }
+            lits.add(null);
+            slotList.add(slot);
+            i = close + 1;
+        }
+        if (!lit.isEmpty()) {
+            lits.add(lit.toString());
+            slotList.add(-1);
+        }
+
+        int[] slots = new int[slotList.size()];
+        for (int k = 0; k < slots.length; k++) slots[k] = slotList.get(k);
+        return new MsgTemplate(src, lits.toArray(new String[0]), slots);
+    }
+
+    /** Source string this template was compiled from. */
+    public String source() {
+        return source;
+    }
+
+    public void render(StringBuilder out, Values values) {
+        for (int i = 0; i < literals.length; i++) {
+            String lit = literals[i];
+            if (lit != null) out.append(lit);
+            else values.append(out, slots[i]);
+        }
+    }
+}
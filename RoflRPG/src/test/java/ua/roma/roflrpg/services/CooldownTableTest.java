@@ -0,0 +1,92 @@
+package ua.roma.roflrpg.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CooldownTableTest {
+    private static final long NOW = 1_000_000L;
+
+    @Test
+    void unknownPlayerHasNoSlotAndNoCooldowns() {
+        CooldownTable t = new CooldownTable();
+        int slot = t.slotOf(UUID.randomUUID());
+        assertEquals(-1, slot);
+        assertEquals(0, t.cooldownLeftMs(slot, 3, NOW));
+        assertEquals(0, t.gcdLeftMs(slot, NOW));
+    }
+
+    @Test
+    void cooldownsAndGcdAreKeptPerPlayer() {
+        CooldownTable t = new CooldownTable();
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        t.setCooldown(a, 2, NOW + 5_000);
+        t.setGcd(b, NOW + 700);
+
+        assertEquals(5_000, t.cooldownLeftMs(t.slotOf(a), 2, NOW));
+        assertEquals(0, t.cooldownLeftMs(t.slotOf(a), 1, NOW));
+        assertEquals(0, t.gcdLeftMs(t.slotOf(a), NOW));
+        assertEquals(700, t.gcdLeftMs(t.slotOf(b), NOW));
+        assertEquals(0, t.cooldownLeftMs(t.slotOf(b), 2, NOW));
+        assertEquals(0, t.cooldownLeftMs(t.slotOf(a), 2, NOW + 6_000));
+    }
+
+    @Test
+    void releasedSlotIsRecycledClean() {
+        CooldownTable t = new CooldownTable();
+        UUID a = UUID.randomUUID();
+        t.setCooldown(a, 4, NOW + 5_000);
+        t.setGcd(a, NOW + 5_000);
+        int slot = t.slotOf(a);
+
+        t.release(a);
+        assertEquals(-1, t.slotOf(a));
+        t.release(a); // second quit is a no-op
+
+        UUID b = UUID.randomUUID();
+        t.setGcd(b, NOW + 100);
+        assertEquals(slot, t.slotOf(b));
+        assertEquals(0, t.cooldownLeftMs(slot, 4, NOW));
+        assertEquals(100, t.gcdLeftMs(slot, NOW));
+    }
+
+    @Test
+    void growsPastInitialPlayersAndSkills() {
+        CooldownTable t = new CooldownTable();
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UUID u = UUID.randomUUID();
+            players.add(u);
+            t.setCooldown(u, i, NOW + 1_000 + i);
+        }
+        for (int i = 0; i < players.size(); i++) {
+            int slot = t.slotOf(players.get(i));
+            assertEquals(1_000 + i, t.cooldownLeftMs(slot, i, NOW));
+            assertEquals(0, t.cooldownLeftMs(slot, i + 1, NOW));
+            assertEquals(0, t.cooldownLeftMs(slot, 10_000, NOW));
+        }
+    }
+
+    @Test
+    void slotsVersionMovesOnlyWhenSlotsChange() {
+        CooldownTable t = new CooldownTable();
+        UUID a = UUID.randomUUID();
+        int v0 = t.slotsVersion();
+
+        t.setCooldown(a, 1, NOW + 1_000);
+        int v1 = t.slotsVersion();
+        assertNotEquals(v0, v1);
+
+        t.setCooldown(a, 2, NOW + 1_000);
+        t.setGcd(a, NOW + 1_000);
+        assertEquals(v1, t.slotsVersion());
+
+        t.release(a);
+        assertNotEquals(v1, t.slotsVersion());
+    }
+}
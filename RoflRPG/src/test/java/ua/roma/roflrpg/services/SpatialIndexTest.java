@@ -0,0 +1,225 @@
+package ua.roma.roflrpg.services;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.util.Vector;
+import org.junit.jupiter.api.Test;
+import ua.roma.roflrpg.defs.SkillDef;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link SpatialIndex.Grid} queries against a fake world: entities are proxies at fixed positions, chunks are
+ * derived from their block coordinates.
+ */
+class SpatialIndexTest {
+
+    /** A living entity at a fixed position. */
+    private static final class Mob {
+        final double x, y, z;
+        boolean dead;
+        boolean valid = true;
+        final LivingEntity entity;
+
+        Mob(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.entity = (LivingEntity) Proxy.newProxyInstance(LivingEntity.class.getClassLoader(),
+                    new Class<?>[]{LivingEntity.class}, (proxy, m, args) -> switch (m.getName()) {
+                        case "getLocation" -> {
+                            Location l = args != null && args.length == 1 ? (Location) args[0] : new Location(null, 0, 0, 0);
+                            l.setX(this.x);
+                            l.setY(this.y);
+                            l.setZ(this.z);
+                            yield l;
+                        }
+                        case "isDead" -> dead;
+                        case "isValid" -> valid;
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        case "toString" -> "Mob(" + this.x + ", " + this.y + ", " + this.z + ")";
+                        default -> throw new UnsupportedOperationException(m.getName());
+                    });
+        }
+    }
+
+    /** World whose loaded chunks hold the given mobs. */
+    private static World world(List<Mob> mobs) {
+        return world(mobs, new ArrayList<>());
+    }
+
+    /** @param reads every {@code getChunkAt} call, as {@code "cx,cz"} */
+    private static World world(List<Mob> mobs, List<String> reads) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "isChunkLoaded" -> true;
+                    case "getChunkAt" -> {
+                        reads.add(args[0] + "," + args[1]);
+                        yield chunk(mobs, (int) args[0], (int) args[1]);
+                    }
+                    case "getUID" -> UUID.nameUUIDFromBytes("test".getBytes());
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(m.getName());
+                });
+    }
+
+    private static Chunk chunk(List<Mob> mobs, int cx, int cz) {
+        List<Entity> in = new ArrayList<>();
+        for (Mob mob : mobs) {
+            if (((int) Math.floor(mob.x) >> 4) == cx && ((int) Math.floor(mob.z) >> 4) == cz) in.add(mob.entity);
+        }
+        Entity[] entities = in.toArray(new Entity[0]);
+        return (Chunk) Proxy.newProxyInstance(Chunk.class.getClassLoader(), new Class<?>[]{Chunk.class},
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "getEntities" -> entities;
+                    case "getX" -> cx;
+                    case "getZ" -> cz;
+                    default -> throw new UnsupportedOperationException(m.getName());
+                });
+    }
+
+    /** A mob {@code deg} degrees off the +X axis, {@code dist} blocks from (0.5, 64, 0.5). */
+    private static Mob at(double deg, double dist) {
+        double r = Math.toRadians(deg);
+        return new Mob(0.5 + Math.cos(r) * dist, 64, 0.5 + Math.sin(r) * dist);
+    }
+
+    private static List<LivingEntity> cone(List<Mob> mobs, double range, double angleDeg) {
+        List<LivingEntity> out = new ArrayList<>();
+        new SpatialIndex.Grid(world(mobs)).query(0.5, 64, 0.5, range, new Vector(1, 0, 0),
+                SpatialIndex.coneCos(angleDeg), null, out);
+        return out;
+    }
+
+    @Test
+    void builtinConeIsThirtyFiveDegreesEitherSide() {
+        Mob inside = at(30, 5);
+        Mob outside = at(40, 5);
+        Mob otherSide = at(-30, 5);
+
+        List<LivingEntity> hit = cone(List.of(inside, outside, otherSide), 8, SkillDef.Target.BUILTIN_CONE_ANGLE);
+        assertTrue(hit.contains(inside.entity));
+        assertTrue(hit.contains(otherSide.entity));
+        assertFalse(hit.contains(outside.entity));
+    }
+
+    @Test
+    void addonConeIsSeventyDegreesEitherSide() {
+        Mob inside = at(65, 5);
+        Mob outside = at(75, 5);
+
+        List<LivingEntity> hit = cone(List.of(inside, outside), 8, SkillDef.Target.DEFAULT_CONE_ANGLE);
+        assertEquals(List.of(inside.entity), hit);
+    }
+
+    @Test
+    void coneSkipsOutOfRangeBehindAndOrigin() {
+        Mob far = at(0, 9);
+        Mob behind = at(180, 3);
+        Mob onOrigin = new Mob(0.5, 64, 0.5);
+
+        assertTrue(cone(List.of(far, behind, onOrigin), 8, 140).isEmpty());
+    }
+
+    @Test
+    void coneCosIsTheHalfAngle() {
+        assertEquals(Math.cos(Math.toRadians(35)), SpatialIndex.coneCos(70), 1e-12);
+        assertEquals(0.0, SpatialIndex.coneCos(180), 1e-12);
+    }
+
+    @Test
+    void sphereUsesSquaredRadiusAcrossChunkBorders() {
+        // Center sits on a chunk corner; mobs spread over all four chunks.
+        Mob inside = new Mob(16 + 2.8, 64, 16 + 2.8);
+        Mob edge = new Mob(16 - 4, 64, 16);
+        Mob corner = new Mob(16 - 3, 64, 16 - 3);
+        Mob above = new Mob(16, 64 + 5, 16);
+
+        List<String> reads = new ArrayList<>();
+        List<LivingEntity> out = new ArrayList<>();
+        new SpatialIndex.Grid(world(List.of(inside, edge, corner, above), reads))
+                .query(16, 64, 16, 4, null, 0, null, out);
+
+        assertEquals(Set.of(inside.entity, edge.entity), Set.copyOf(out));
+        assertEquals(Set.of("0,0", "0,1", "1,0", "1,1"), Set.copyOf(reads));
+    }
+
+    @Test
+    void chunksAreReadOncePerTick() {
+        Mob a = new Mob(3, 64, 3);
+        Mob b = new Mob(20, 64, 8);
+        List<String> reads = new ArrayList<>();
+        SpatialIndex.Grid grid = new SpatialIndex.Grid(world(List.of(a, b), reads));
+
+        List<LivingEntity> out = new ArrayList<>();
+        grid.query(3, 64, 3, 2, null, 0, null, out);
+        grid.query(4, 64, 4, 2, null, 0, null, out);
+        grid.query(18, 64, 8, 4, null, 0, null, out);
+        assertEquals(List.of("0,0", "1,0"), reads);
+        assertEquals(List.of(a.entity, a.entity, b.entity), out);
+
+        // Next tick: snapshots are dropped and chunks read again.
+        grid.reset();
+        out.clear();
+        grid.query(3, 64, 3, 2, null, 0, null, out);
+        assertEquals(List.of("0,0", "1,0", "0,0"), reads);
+        assertEquals(List.of(a.entity), out);
+    }
+
+    @Test
+    void skipsExcludedDeadAndRemovedEntities() {
+        Mob caster = new Mob(1, 64, 1);
+        Mob dead = new Mob(2, 64, 1);
+        Mob removed = new Mob(1, 64, 2);
+        Mob alive = new Mob(2, 64, 2);
+        dead.dead = true;
+        // Unloaded or despawned since the snapshot: not dead, but no longer valid.
+        removed.valid = false;
+
+        List<LivingEntity> out = new ArrayList<>();
+        new SpatialIndex.Grid(world(List.of(caster, dead, removed, alive)))
+                .query(1, 64, 1, 5, null, 0, caster.entity, out);
+        assertEquals(List.of(alive.entity), out);
+    }
+
+    @Test
+    void chunkTableForgetsEntriesOnClear() {
+        SpatialIndex.ChunkTable t = new SpatialIndex.ChunkTable();
+        t.put(7L, 3);
+        t.put(-7L, 4);
+        assertEquals(3, t.get(7L));
+        assertEquals(4, t.get(-7L));
+
+        t.clear();
+        assertEquals(-1, t.get(7L));
+        assertEquals(-1, t.get(-7L));
+
+        // Slots of the old epoch are reused.
+        t.put(7L, 9);
+        assertEquals(9, t.get(7L));
+        assertEquals(-1, t.get(-7L));
+    }
+
+    @Test
+    void chunkTableRehashKeepsOnlyCurrentEntries() {
+        SpatialIndex.ChunkTable t = new SpatialIndex.ChunkTable();
+        for (int i = 0; i < 20; i++) t.put(1000L + i, i);
+        t.clear();
+        // Enough keys to grow the table several times; the stale ones must not come back.
+        for (int i = 0; i < 500; i++) t.put(((long) i << 32) | (-i & 0xFFFFFFFFL), i);
+
+        for (int i = 0; i < 500; i++) assertEquals(i, t.get(((long) i << 32) | (-i & 0xFFFFFFFFL)));
+        for (int i = 0; i < 20; i++) assertEquals(-1, t.get(1000L + i));
+    }
+}
@@ -0,0 +1,238 @@
+package ua.roma.roflrpg.storage;
+
+import org.bukkit.configuration.MemoryConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ua.roma.roflrpg.model.PlayerProfile;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the MySQL backend's SQL (upserts, {@code TalentRows.MYSQL}, schema migration) against an in-memory H2
+ * database in MySQL mode.
+ */
+class MySqlDataStoreTest {
+    private String url;
+    private MySqlDataStore store;
+
+    @BeforeEach
+    void setUp() {
+        // Lower-case identifiers like MySQL on Linux, so metadata lookups by table name match.
+        url = "jdbc:h2:mem:rpg" + UUID.randomUUID().toString().replace("-", "")
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) store.close();
+    }
+
+    private MySqlDataStore open() {
+        if (store != null) store.close();
+        MemoryConfiguration cfg = new MemoryConfiguration();
+        cfg.set("jdbcUrl", url);
+        cfg.set("driverClassName", "org.h2.Driver");
+        cfg.set("username", "sa");
+        cfg.set("password", "");
+        cfg.set("poolSize", 2);
+        store = new MySqlDataStore(() -> cfg, Logger.getLogger("MySqlDataStoreTest"));
+        store.init();
+        return store;
+    }
+
+    private static PlayerProfile profile() {
+        PlayerProfile p = new PlayerProfile(UUID.randomUUID(), "Steve");
+        p.raceId("elf");
+        p.classId("mage");
+        p.level(7);
+        p.xp(1234);
+        p.talentPoints(3);
+        p.setTalentRank("arcane_mind", 2);
+        p.setTalentRank("quick_step", 1);
+        p.unlockBranch("dark");
+        p.cooldownUntil("fireball", System.currentTimeMillis() + 600_000);
+        return p;
+    }
+
+    @Test
+    void findReturnsNullForUnknownPlayer() {
+        assertNull(open().find(UUID.randomUUID(), "Nobody"));
+    }
+
+    @Test
+    void saveAllThenFindRoundTrips() {
+        MySqlDataStore s = open();
+        PlayerProfile p = profile();
+        assertEquals(1, s.saveAll(List.of(p.snapshot())));
+
+        PlayerProfile read = s.find(p.uuid(), null);
+        assertNotNull(read);
+        assertEquals("Steve", read.lastKnownName());
+        assertEquals("elf", read.raceId());
+        assertEquals("mage", read.classId());
+        assertEquals(7, read.level());
+        assertEquals(1234, read.xp());
+        assertEquals(3, read.talentPoints());
+        assertEquals(p.talentRanks(), read.talentRanks());
+        assertEquals(Set.of("dark"), read.unlockedBranches());
+        assertTrue(read.cooldownsUntil().containsKey("fireball"));
+        assertFalse(read.isDirty());
+    }
+
+    @Test
+    void upsertUpdatesRowAndOnlyChangedTalents() {
+        MySqlDataStore s = open();
+        PlayerProfile p = profile();
+        s.saveAll(List.of(p.snapshot()));
+
+        p.level(8);
+        p.setTalentRank("arcane_mind", 3);
+        p.setTalentRank("quick_step", 0);
+        p.setTalentRank("iron_skin", 1);
+        p.unlockBranch("light");
+        s.saveAll(List.of(p.snapshot()));
+
+        PlayerProfile read = s.find(p.uuid(), "Alex");
+        assertEquals("Alex", read.lastKnownName());
+        assertEquals(8, read.level());
+        assertEquals(3, read.talentRank("arcane_mind"));
+        assertEquals(0, read.talentRank("quick_step"));
+        assertEquals(1, read.talentRank("iron_skin"));
+        assertEquals(Set.of("dark", "light"), read.unlockedBranches());
+    }
+
+    @Test
+    void talentRewriteReplacesAllRows() {
+        MySqlDataStore s = open();
+        PlayerProfile p = profile();
+        s.saveAll(List.of(p.snapshot()));
+
+        p.clearTalents();
+        p.setTalentRank("iron_skin", 2);
+        s.saveAll(List.of(p.snapshot()));
+
+        PlayerProfile read = s.find(p.uuid(), null);
+        assertEquals(1, read.talentCount());
+        assertEquals(2, read.talentRank("iron_skin"));
+        assertEquals(Set.of("dark"), read.unlockedBranches());
+    }
+
+    @Test
+    void talentsColumnFollowsRowsAndWinsAfterDowngrade() throws Exception {
+        MySqlDataStore s = open();
+        PlayerProfile p = profile();
+        s.saveAll(List.of(p.snapshot()));
+        try (Connection c = DriverManager.getConnection(url, "sa", ""); Statement st = c.createStatement()) {
+            var rs = st.executeQuery("SELECT talents FROM profiles WHERE uuid='" + p.uuid() + "'");
+            assertTrue(rs.next());
+            assertEquals(p.talentsCsv(), rs.getString(1));
+
+            // A plugin version without the talent tables respecs the player and only updates the CSV.
+            st.executeUpdate("UPDATE profiles SET talents='iron_skin:2' WHERE uuid='" + p.uuid() + "'");
+        }
+
+        PlayerProfile read = s.find(p.uuid(), null);
+        assertEquals(Map.of("iron_skin", 2), read.talentRanks());
+        assertTrue(read.unlockedBranches().isEmpty());
+        assertTrue(read.isDirty());
+
+        // The next save rewrites the rows to match.
+        s.saveAll(List.of(read.snapshot()));
+        try (Connection c = DriverManager.getConnection(url, "sa", ""); Statement st = c.createStatement()) {
+            var rs = st.executeQuery("SELECT COUNT(*) FROM profile_talents WHERE uuid='" + p.uuid() + "'");
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+        }
+        assertFalse(s.find(p.uuid(), null).isDirty());
+    }
+
+    @Test
+    void staleSaveIsRejected() {
+        MySqlDataStore s = open();
+        PlayerProfile p = profile();
+        s.saveAll(List.of(p.snapshot()));
+
+        // Both servers hold the same row version; B saves first.
+        PlayerProfile onA = s.find(p.uuid(), null);
+        PlayerProfile onB = s.find(p.uuid(), null);
+        onB.level(20);
+        assertEquals(1, s.saveAll(List.of(onB.snapshot())));
+        assertEquals(onB.rowVersion(), s.rowVersion(p.uuid()));
+
+        onA.level(9);
+        PlayerProfile fresh = profile();
+        assertEquals(1, s.saveAll(List.of(onA.snapshot(), fresh.snapshot())));
+        assertEquals(20, s.find(p.uuid(), null).level());
+        assertNotNull(s.find(fresh.uuid(), null));
+        assertTrue(onA.rowVersion() <= s.rowVersion(p.uuid()));
+        assertEquals(-1, s.rowVersion(UUID.randomUUID()));
+    }
+
+    @Test
+    void replaySkipsRowsSavedElsewhere() {
+        MySqlDataStore s = open();
+        PlayerProfile p = profile();
+        s.saveAll(List.of(p.snapshot()));
+        // Crash journal copy: newer than the row this server wrote.
+        p.level(9);
+        PlayerProfile journaled = p.copy();
+
+        // Another server picks the player up and saves progress of its own.
+        PlayerProfile other = s.find(p.uuid(), null);
+        other.level(20);
+        s.saveAll(List.of(other.snapshot()));
+
+        assertEquals(0, s.replayAll(List.of(journaled)));
+        assertEquals(20, s.find(p.uuid(), null).level());
+    }
+
+    @Test
+    void replayWritesRowsNobodySavedSince() {
+        MySqlDataStore s = open();
+        PlayerProfile p = profile();
+        s.saveAll(List.of(p.snapshot()));
+        p.level(9);
+        PlayerProfile journaled = p.copy();
+        PlayerProfile unseen = profile();
+
+        assertEquals(2, s.replayAll(List.of(journaled, unseen)));
+        assertEquals(9, s.find(p.uuid(), null).level());
+        assertNotNull(s.find(unseen.uuid(), null));
+    }
+
+    @Test
+    void initUpgradesLegacySchema() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        // First-release schema: no cooldowns column, talents as CSV.
+        try (Connection c = DriverManager.getConnection(url, "sa", ""); Statement st = c.createStatement()) {
+            st.executeUpdate("CREATE TABLE profiles (uuid CHAR(36) NOT NULL PRIMARY KEY, name VARCHAR(64) NOT NULL,"
+                    + " race VARCHAR(64) NOT NULL, class VARCHAR(64) NOT NULL, level INT NOT NULL, xp BIGINT NOT NULL,"
+                    + " talent_points INT NOT NULL, talents TEXT NOT NULL, max_mana INT NOT NULL,"
+                    + " max_stamina INT NOT NULL, mana DOUBLE NOT NULL, stamina DOUBLE NOT NULL)");
+            st.executeUpdate("INSERT INTO profiles VALUES('" + uuid + "', 'Old', 'dwarf', 'warrior', 5, 10, 0,"
+                    + " 'arcane_mind:2,quick_step,branch:dark', 100, 100, 50, 60)");
+        }
+
+        PlayerProfile read = open().find(uuid, null);
+        assertEquals("dwarf", read.raceId());
+        assertEquals(2, read.talentRank("arcane_mind"));
+        assertEquals(1, read.talentRank("quick_step"));
+        assertEquals(Set.of("dark"), read.unlockedBranches());
+        assertTrue(read.cooldownsUntil().isEmpty());
+
+        // Second start: column exists, nothing left to migrate.
+        PlayerProfile again = open().find(uuid, null);
+        assertEquals(read.talentRanks(), again.talentRanks());
+        assertEquals(Set.of("dark"), again.unlockedBranches());
+    }
+}
@@ -0,0 +1,101 @@
+package ua.roma.roflrpg.storage;
+
+import org.bukkit.configuration.MemoryConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ua.roma.roflrpg.model.PlayerProfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Profile load: the wide row + talent tables ({@link ProfileRows#read}, {@link TalentRows}) against the
+ * {@link ProfileCodec} snapshot column ({@code storage.sqlite.binarySnapshots}), both through
+ * {@link SQLiteDataStore#find}, plus the bare decode.
+ *
+ * <p>Not part of the test run; start {@link #main} from the test classpath (e.g. the IDE).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileLoadBenchmark {
+
+    @Param({"4", "32"})
+    public int talents;
+
+    private Path dir;
+    private SQLiteDataStore rows;
+    private SQLiteDataStore snapshots;
+    private UUID uuid;
+    private byte[] blob;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("roflrpg-bench");
+        PlayerProfile p = new PlayerProfile(UUID.randomUUID(), "Steve");
+        p.raceId("elf");
+        p.classId("mage");
+        p.level(42);
+        p.xp(123_456);
+        p.talentPoints(3);
+        for (int i = 0; i < talents; i++) p.setTalentRank("talent_" + i, 1 + i % 5);
+        p.unlockBranch("dark");
+        p.cooldownUntil("fireball", System.currentTimeMillis() + 3_600_000);
+        uuid = p.uuid();
+
+        rows = open("rows", false);
+        snapshots = open("snapshots", true);
+        rows.saveAll(List.of(p.copy()));
+        snapshots.saveAll(List.of(p.copy()));
+        blob = ProfileCodec.encode(p, null);
+    }
+
+    private SQLiteDataStore open(String name, boolean binarySnapshots) {
+        MemoryConfiguration cfg = new MemoryConfiguration();
+        cfg.set("storage.sqlite.binarySnapshots", binarySnapshots);
+        SQLiteDataStore store = new SQLiteDataStore(dir.resolve(name).toFile(), () -> cfg, Logger.getLogger("bench"));
+        store.init();
+        return store;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        rows.close();
+        snapshots.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public PlayerProfile findRows() {
+        return rows.find(uuid, null);
+    }
+
+    @Benchmark
+    public PlayerProfile findSnapshot() {
+        return snapshots.find(uuid, null);
+    }
+
+    @Benchmark
+    public PlayerProfile decodeOnly() {
+        return ProfileCodec.decode(uuid, null, blob, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ProfileLoadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+package ua.roma.roflrpg.storage;
+
+import org.bukkit.configuration.MemoryConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ua.roma.roflrpg.model.PlayerProfile;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** SQLite backend on a temporary file, with and without {@code storage.sqlite.binarySnapshots}. */
+class SQLiteDataStoreTest {
+    @TempDir
+    Path dir;
+    private SQLiteDataStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) store.close();
+    }
+
+    private SQLiteDataStore open(Boolean binarySnapshots) {
+        if (store != null) store.close();
+        MemoryConfiguration cfg = new MemoryConfiguration();
+        if (binarySnapshots != null) cfg.set("storage.sqlite.binarySnapshots", binarySnapshots);
+        store = new SQLiteDataStore(dir.toFile(), () -> cfg, Logger.getLogger("SQLiteDataStoreTest"));
+        store.init();
+        return store;
+    }
+
+    private static PlayerProfile profile() {
+        PlayerProfile p = new PlayerProfile(UUID.randomUUID(), "Steve");
+        p.raceId("elf");
+        p.classId("mage");
+        p.level(7);
+        p.xp(1234);
+        p.setTalentRank("arcane_mind", 2);
+        p.unlockBranch("dark");
+        return p;
+    }
+
+    private byte[] snapshotColumn(UUID uuid) throws Exception {
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("rpg.db"));
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT snapshot FROM profiles WHERE uuid='" + uuid + "'")) {
+            assertTrue(rs.next());
+            return rs.getBytes(1);
+        }
+    }
+
+    @Test
+    void snapshotsAreOffByDefault() throws Exception {
+        SQLiteDataStore s = open(null);
+        PlayerProfile p = profile();
+        s.saveAll(List.of(p.snapshot()));
+        assertNull(snapshotColumn(p.uuid()));
+        assertEquals(7, s.find(p.uuid(), null).level());
+    }
+
+    @Test
+    void snapshotRoundTrips() throws Exception {
+        SQLiteDataStore s = open(true);
+        PlayerProfile p = profile();
+        s.saveAll(List.of(p.snapshot()));
+        assertNotNull(snapshotColumn(p.uuid()));
+
+        PlayerProfile read = s.find(p.uuid(), "Alex");
+        assertEquals("Alex", read.lastKnownName());
+        assertEquals(7, read.level());
+        assertEquals(1234, read.xp());
+        assertEquals(p.talentRanks(), read.talentRanks());
+        assertEquals(Set.of("dark"), read.unlockedBranches());
+        assertEquals(p.rowVersion(), read.rowVersion());
+        assertFalse(read.isDirty());
+    }
+
+    @Test
+    void rowUpdatedByOlderVersionDropsSnapshot() throws Exception {
+        SQLiteDataStore s = open(true);
+        PlayerProfile p = profile();
+        s.saveAll(List.of(p.snapshot()));
+
+        // An older plugin version only knows the wide row and doesn't bump row_version.
+        try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("rpg.db"));
+             Statement st = c.createStatement()) {
+            st.executeUpdate("UPDATE profiles SET level=50 WHERE uuid='" + p.uuid() + "'");
+        }
+        assertNull(snapshotColumn(p.uuid()));
+        assertEquals(50, s.find(p.uuid(), null).level());
+
+        // The next save writes a fresh snapshot.
+        PlayerProfile read = s.find(p.uuid(), null);
+        read.level(51);
+        s.saveAll(List.of(read.snapshot()));
+        assertNotNull(snapshotColumn(p.uuid()));
+        assertEquals(51, s.find(p.uuid(), null).level());
+    }
+}
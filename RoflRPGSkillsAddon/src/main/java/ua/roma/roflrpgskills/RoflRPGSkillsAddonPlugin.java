@@ -4,6 +4,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 import ua.roma.roflrpg.api.RoflRPGApi;
 import ua.roma.roflrpgskills.builtin.BuiltinSkillHandlers;
+import ua.roma.roflrpgskills.builtin.SkillFxUtil;
 
 public final class RoflRPGSkillsAddonPlugin extends JavaPlugin {
 
@@ -18,6 +19,7 @@ public final class RoflRPGSkillsAddonPlugin extends JavaPlugin {
 
         // Register handlers (legacy ids + namespaced aliases)
         BuiltinSkillHandlers.registerAll(api);
+        SkillFxUtil.bind(api);
 
         getLogger().info("Registered RoflRPG skill handlers (addon)");
     }
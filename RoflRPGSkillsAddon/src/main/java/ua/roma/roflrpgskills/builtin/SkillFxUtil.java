@@ -13,6 +13,7 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.util.RayTraceResult;
 import org.bukkit.util.Vector;
 import ua.roma.roflrpg.RoflRPGPlugin;
+import ua.roma.roflrpg.api.RoflRPGApi;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,8 +27,15 @@ import java.util.concurrent.ThreadLocalRandom;
  * enum constants that might not exist in some api jars (sounds/particles).
  */
 public final class SkillFxUtil {
+    private static RoflRPGApi api;
+
     private SkillFxUtil() {}
 
+    /** Lets target helpers use the core's spatial index instead of scanning the world. */
+    public static void bind(RoflRPGApi roflApi) {
+        api = roflApi;
+    }
+
     // -------------------- Safe enum lookup --------------------
 
     public static Sound soundByName(String name, Sound fallback) {
@@ -160,6 +168,8 @@ public final class SkillFxUtil {
         List<LivingEntity> out = new ArrayList<>();
         if (caster == null) return out;
         Location c = caster.getLocation();
+        if (api != null) return api.nearbyLiving(c, radius, caster);
+
         World w = caster.getWorld();
         if (w == null) return out;
         double r2 = radius * radius;
@@ -232,8 +242,11 @@ public final class SkillFxUtil {
 
     public static void addPotion(LivingEntity e, String potionType, int durationTicks, int amplifier) {
         if (e == null || potionType == null) return;
-        PotionEffectType type = potionTypeFromString(potionType);
-        if (type == null) return;
+        addPotion(e, potionTypeFromString(potionType), durationTicks, amplifier);
+    }
+
+    public static void addPotion(LivingEntity e, PotionEffectType type, int durationTicks, int amplifier) {
+        if (e == null || type == null) return;
         try { e.addPotionEffect(new PotionEffect(type, durationTicks, amplifier, true, true, true)); } catch (Exception ignored) {}
     }
 